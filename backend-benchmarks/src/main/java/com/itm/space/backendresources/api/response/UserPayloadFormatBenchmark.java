@@ -0,0 +1,74 @@
+package com.itm.space.backendresources.api.response;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Размер и стоимость кодирования и декодирования списка UserResponse в JSON, CBOR и Smile.
+// Размер тела в байтах печатается при подготовке каждого набора параметров
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserPayloadFormatBenchmark {
+    @Param({"json", "cbor", "smile"})
+    private String format;
+    @Param({"1", "100"})
+    private int users;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<UserResponse> userResponses;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "cbor" -> CBORMapper.builder().findAndAddModules().build();
+            case "smile" -> SmileMapper.builder().findAndAddModules().build();
+            default -> JsonMapper.builder().findAndAddModules().build();
+        };
+        TypeReference<List<UserResponse>> type = new TypeReference<>() {
+        };
+        writer = mapper.writerFor(type);
+        reader = mapper.readerFor(type);
+        userResponses = IntStream.range(0, users)
+                .mapToObj(i -> new UserResponse("Mihail-" + i, "Akopov", "mihail" + i + "@gmail.com",
+                        List.of("MODERATOR", "USER", "offline_access"), List.of("Moderators", "Backend")))
+                .toList();
+        payload = writer.writeValueAsBytes(userResponses);
+        System.out.printf("%n%s, %d users: %d bytes%n", format, users, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(userResponses);
+    }
+
+    @Benchmark
+    public List<UserResponse> decode() throws IOException {
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,47 @@
+package com.itm.space.backendresources.api.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Стоимость сериализации UserResponse в JSON при разном количестве ролей и групп
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserResponseSerializationBenchmark {
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private final ObjectWriter writer = new ObjectMapper().writerFor(UserResponse.class);
+    private UserResponse userResponse;
+
+    @Setup
+    public void setUp() {
+        userResponse = new UserResponse("Mihail", "Akopov", "mihailjava@gmail.com",
+                IntStream.range(0, size).mapToObj(i -> "role-" + i).toList(),
+                IntStream.range(0, size).mapToObj(i -> "group-" + i).toList());
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() throws JsonProcessingException {
+        return writer.writeValueAsBytes(userResponse);
+    }
+}
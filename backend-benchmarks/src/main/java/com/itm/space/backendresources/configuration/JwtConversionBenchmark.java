@@ -0,0 +1,57 @@
+package com.itm.space.backendresources.configuration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Стоимость преобразования JWT в токен аутентификации при разном количестве ролей в токене.
+// Бенчмарк лежит в пакете SecurityConfiguration, потому что convertJwtToken доступен только в пакете
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtConversionBenchmark {
+    @Param({"1", "10", "50"})
+    private int roleCount;
+
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() {
+        List<String> roles = IntStream.range(0, roleCount)
+                .mapToObj(i -> "role-" + i)
+                .toList();
+        Instant issuedAt = Instant.now();
+        jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(UUID.randomUUID().toString())
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plusSeconds(300))
+                .claim("realm_access", Map.of("roles", roles))
+                .build();
+    }
+
+    @Benchmark
+    public JwtAuthenticationToken convertJwtToken() {
+        return SecurityConfiguration.convertJwtToken(jwt);
+    }
+}
@@ -0,0 +1,70 @@
+package com.itm.space.backendresources.mapper;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Стоимость преобразования ответов Keycloak в UserResponse при большом количестве ролей и групп,
+// без справочника ролей и групп и с заменой имён общими экземплярами из справочника
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+    @Param({"10", "100", "1000"})
+    private int size;
+    @Param({"false", "true"})
+    private boolean catalog;
+
+    private final UserMapper userMapper = new UserMapperImpl();
+    private UserRepresentation userRepresentation;
+    private List<RoleRepresentation> roles;
+    private List<GroupRepresentation> groups;
+
+    @Setup
+    public void setUp() {
+        userRepresentation = new UserRepresentation();
+        userRepresentation.setFirstName("Mihail");
+        userRepresentation.setLastName("Akopov");
+        userRepresentation.setEmail("mihailjava@gmail.com");
+        roles = IntStream.range(0, size)
+                .mapToObj(i -> new RoleRepresentation("role-" + i, null, false))
+                .toList();
+        groups = IntStream.range(0, size)
+                .mapToObj(i -> {
+                    GroupRepresentation group = new GroupRepresentation();
+                    group.setName("group-" + i);
+                    return group;
+                })
+                .toList();
+        if (catalog) {
+            RealmCatalog realmCatalog = new RealmCatalog(10000, 10000);
+            realmCatalog.update(roles.stream().map(RoleRepresentation::getName).toList(),
+                    groups.stream().map(GroupRepresentation::getName).toList());
+            userMapper.setRealmCatalog(realmCatalog);
+        }
+    }
+
+    @Benchmark
+    public UserResponse userRepresentationToUserResponse() {
+        return userMapper.userRepresentationToUserResponse(userRepresentation, roles, groups);
+    }
+}
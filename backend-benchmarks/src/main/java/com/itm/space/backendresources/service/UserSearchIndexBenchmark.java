@@ -0,0 +1,62 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Время поиска по префиксу в индексе пользователей в зависимости от размера realm
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSearchIndexBenchmark {
+    @Param({"10000", "100000"})
+    private int users;
+
+    private UserSearchIndex userSearchIndex;
+
+    @Setup
+    public void setUp() {
+        userSearchIndex = new UserSearchIndex(users, new SimpleMeterRegistry());
+        userSearchIndex.startBuild();
+        userSearchIndex.addToBuild(IntStream.range(0, users)
+                .mapToObj(i -> new UserSearchResponse(UUID.randomUUID(), "user" + i, "Mihail" + i % 100,
+                        "Akopov" + i % 1000, "user" + i + "@gmail.com"))
+                .toList());
+        userSearchIndex.finishBuild();
+    }
+
+    // Короткий префикс, подходящий многим пользователям: стоимость ограничена количеством результатов
+    @Benchmark
+    public List<UserSearchResponse> commonPrefix() {
+        return userSearchIndex.search("mih", 20);
+    }
+
+    // Префикс из нескольких слов: кандидаты по самому длинному слову проверяются на остальные слова
+    @Benchmark
+    public List<UserSearchResponse> multiWord() {
+        return userSearchIndex.search("akopov12 mihail1", 20);
+    }
+
+    @Benchmark
+    public List<UserSearchResponse> exactUsername() {
+        return userSearchIndex.search("user54321", 20);
+    }
+}
@@ -0,0 +1,284 @@
+package com.itm.space.backend.client.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Кэширует успешные ответы на GET-запросы маршрута. Ключ включает имя аутентифицированного пользователя,
+// поэтому ответ, полученный одним пользователем, никогда не отдаётся другому, а также заголовки Accept
+// и Accept-Encoding: сжатый ответ не отдаётся клиенту, который не принимает сжатие.
+// Тело передаётся клиенту по частям по мере получения от сервиса, копия для кэша собирается параллельно.
+// Потоковые ответы и ответы без Content-Length или больше max-entry-size не кэшируются.
+// Сервис должен явно разрешить кэширование ответа заголовком Cache-Control с max-age: ответы без max-age
+// или с no-store, no-cache не кэшируются. private допускается, потому что запись доступна только её пользователю.
+// Запись хранится не дольше max-age ответа и ttl маршрута
+@Component
+public class ResponseCacheGatewayFilterFactory
+		extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+	public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+	// Заголовки, которые не сохраняются в кэше
+	private static final Set<String> EXCLUDED_HEADERS = Set.of(HttpHeaders.SET_COOKIE.toLowerCase(),
+			HttpHeaders.TRANSFER_ENCODING.toLowerCase(), HttpHeaders.CONNECTION.toLowerCase(),
+			CACHE_STATUS_HEADER.toLowerCase());
+
+	// Потоковые типы ответов (например, выгрузка пользователей в NDJSON) не кэшируются
+	private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON,
+			MediaType.TEXT_EVENT_STREAM, MediaType.valueOf("application/cbor-seq"),
+			MediaType.valueOf("application/stream+json"));
+
+	// Заголовки запроса, входящие в ключ кэша; ответы с Vary по другим заголовкам не кэшируются
+	private static final Set<String> KEY_HEADERS = Set.of(HttpHeaders.ACCEPT.toLowerCase(),
+			HttpHeaders.ACCEPT_ENCODING.toLowerCase());
+
+	private final Cache<String, CachedResponse> cache;
+	private final long maxEntryBytes;
+	private final Counter bypassed;
+
+	@Autowired
+	public ResponseCacheGatewayFilterFactory(@Value("${gateway.response-cache.max-size:64MB}") DataSize maxSize,
+			@Value("${gateway.response-cache.max-entry-size:256KB}") DataSize maxEntrySize,
+			MeterRegistry meterRegistry) {
+		this(maxSize, maxEntrySize, meterRegistry, Ticker.systemTicker());
+	}
+
+	// Конструктор с источником времени для проверки срока жизни записей в тестах
+	ResponseCacheGatewayFilterFactory(DataSize maxSize, DataSize maxEntrySize, MeterRegistry meterRegistry,
+			Ticker ticker) {
+		super(Config.class);
+		this.maxEntryBytes = maxEntrySize.toBytes();
+		// Размер кэша ограничен суммарным объёмом тел ответов, срок жизни записи задаётся маршрутом
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxSize.toBytes())
+				.weigher((String key, CachedResponse response) -> key.length() + response.body().length)
+				.expireAfter(new Expiry<String, CachedResponse>() {
+					@Override
+					public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+						return response.ttl().toNanos();
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, CachedResponse response, long currentTime,
+							long currentDuration) {
+						return response.ttl().toNanos();
+					}
+
+					@Override
+					public long expireAfterRead(String key, CachedResponse response, long currentTime,
+							long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.ticker(ticker)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "gatewayResponses");
+		this.bypassed = Counter.builder("gateway.response.cache.bypass")
+				.description("Cacheable requests that skipped the response cache because of Cache-Control")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public List<String> shortcutFieldOrder() {
+		return List.of("ttl");
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		GatewayFilter filter = (exchange, chain) -> {
+			ServerHttpRequest request = exchange.getRequest();
+			if (request.getMethod() != HttpMethod.GET) {
+				return chain.filter(exchange);
+			}
+			String cacheControl = request.getHeaders().getCacheControl();
+			boolean noStore = cacheControl != null && cacheControl.contains("no-store");
+			boolean noCache = cacheControl != null && cacheControl.contains("no-cache");
+			// Запросы без аутентифицированного пользователя не кэшируются. Пустой результат цепочки фильтров
+			// не должен попадать в switchIfEmpty, иначе запрос ушёл бы в сервис повторно
+			return exchange.getPrincipal()
+					.map(principal -> Optional.of(cacheKey(principal.getName(), request)))
+					.defaultIfEmpty(Optional.empty())
+					.flatMap(key -> {
+						if (key.isEmpty()) {
+							return chain.filter(exchange);
+						}
+						if (noStore || noCache) {
+							bypassed.increment();
+						}
+						if (noStore) {
+							return chain.filter(exchange);
+						}
+						// no-cache: ответ запрашивается заново, но свежий ответ сохраняется в кэш
+						CachedResponse cached = noCache ? null : cache.getIfPresent(key.get());
+						if (cached != null) {
+							return writeCached(exchange.getResponse(), cached);
+						}
+						ServerWebExchange cachingExchange = exchange.mutate()
+								.response(new CachingResponse(exchange.getResponse(), key.get(), config.getTtl()))
+								.build();
+						return chain.filter(cachingExchange);
+					});
+		};
+		// Фильтр должен обернуть ответ до того, как NettyWriteResponseFilter начнёт его запись
+		return new OrderedGatewayFilter(filter, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+	}
+
+	private static String cacheKey(String principal, ServerHttpRequest request) {
+		return principal + ' ' + request.getURI().getRawPath() + '?' + Objects.toString(request.getURI().getRawQuery(), "")
+				+ ' ' + request.getHeaders().getAccept()
+				+ ' ' + String.join(",", request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING));
+	}
+
+	// Метод для проверки, что ответ зависит только от заголовков запроса, входящих в ключ кэша
+	private static boolean varyCoveredByKey(HttpHeaders headers) {
+		return headers.getVary().stream()
+				.flatMap(vary -> Arrays.stream(vary.split(",")))
+				.map(name -> name.trim().toLowerCase())
+				.allMatch(name -> name.isEmpty() || KEY_HEADERS.contains(name));
+	}
+
+	// Метод для записи ответа из кэша без обращения к сервису
+	private static Mono<Void> writeCached(ServerHttpResponse response, CachedResponse cached) {
+		response.setStatusCode(cached.status());
+		response.getHeaders().putAll(cached.headers());
+		response.getHeaders().set(CACHE_STATUS_HEADER, "HIT");
+		return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+	}
+
+	// Метод для получения срока, на который сервис разрешил кэширование ответа; null - кэшировать нельзя
+	private static Duration allowedTtl(HttpHeaders headers) {
+		Duration maxAge = null;
+		for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+			for (String directive : value.split(",")) {
+				String name = directive.trim().toLowerCase();
+				if (name.equals("no-store") || name.equals("no-cache")) {
+					return null;
+				}
+				if (name.startsWith("max-age=")) {
+					try {
+						maxAge = Duration.ofSeconds(Long.parseLong(name.substring("max-age=".length()).trim()));
+					} catch (NumberFormatException ex) {
+						return null;
+					}
+				}
+			}
+		}
+		return maxAge != null && !maxAge.isZero() && !maxAge.isNegative() ? maxAge : null;
+	}
+
+	// Метод для проверки, что тело ответа можно сохранить в кэш: размер известен заранее и не больше
+	// max-entry-size, а тип ответа не потоковый
+	private boolean storableBody(HttpHeaders headers) {
+		long contentLength = headers.getContentLength();
+		MediaType contentType = headers.getContentType();
+		return contentLength >= 0 && contentLength <= maxEntryBytes
+				&& (contentType == null || STREAMING_MEDIA_TYPES.stream().noneMatch(contentType::isCompatibleWith));
+	}
+
+	// Обёртка ответа, сохраняющая тело успешного ответа в кэш по мере его записи клиенту
+	private class CachingResponse extends ServerHttpResponseDecorator {
+		private final String key;
+		private final Duration ttl;
+
+		CachingResponse(ServerHttpResponse delegate, String key, Duration ttl) {
+			super(delegate);
+			this.key = key;
+			this.ttl = ttl;
+		}
+
+		@Override
+		public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+			getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+			Duration allowedTtl = allowedTtl(getHeaders());
+			if (getStatusCode() != HttpStatus.OK || allowedTtl == null || !varyCoveredByKey(getHeaders())
+					|| !storableBody(getHeaders())) {
+				return super.writeWith(body);
+			}
+			Duration entryTtl = allowedTtl.compareTo(ttl) < 0 ? allowedTtl : ttl;
+			// Части тела уходят клиенту сразу; копия перестаёт собираться, как только превышает max-entry-size
+			// (Content-Length мог не совпасть с фактическим телом)
+			ByteArrayOutputStream copy = new ByteArrayOutputStream((int) getHeaders().getContentLength());
+			AtomicBoolean overflow = new AtomicBoolean();
+			Flux<? extends DataBuffer> copyingBody = Flux.from(body).doOnNext(buffer -> {
+				if (!overflow.get()) {
+					if (copy.size() + buffer.readableByteCount() > maxEntryBytes) {
+						overflow.set(true);
+						copy.reset();
+					} else {
+						// Чтение через ByteBuffer не сдвигает позицию чтения буфера, который затем пишется клиенту
+						byte[] bytes = new byte[buffer.readableByteCount()];
+						buffer.asByteBuffer().get(bytes);
+						copy.writeBytes(bytes);
+					}
+				}
+			});
+			// В кэш попадает только тело, полностью переданное клиенту
+			return super.writeWith(copyingBody).doOnSuccess(done -> {
+				if (!overflow.get()) {
+					cache.put(key, new CachedResponse(HttpStatus.OK, cacheableHeaders(getHeaders()), copy.toByteArray(),
+							entryTtl));
+				}
+			});
+		}
+
+		private HttpHeaders cacheableHeaders(HttpHeaders headers) {
+			HttpHeaders copy = new HttpHeaders();
+			headers.forEach((name, values) -> {
+				if (!EXCLUDED_HEADERS.contains(name.toLowerCase())) {
+					copy.put(name, List.copyOf(values));
+				}
+			});
+			return HttpHeaders.readOnlyHttpHeaders(copy);
+		}
+	}
+
+	private record CachedResponse(HttpStatus status, HttpHeaders headers, byte[] body, Duration ttl) {
+	}
+
+	public static class Config {
+		// Время жизни ответа в кэше для маршрута
+		private Duration ttl = Duration.ofSeconds(30);
+
+		public Duration getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl) {
+			this.ttl = ttl;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.itm.space.backend.client.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Ограничитель частоты запросов по алгоритму token bucket с хранением корзин в памяти шлюза.
+// Для каждой пары маршрут + пользователь ведётся своя корзина, обновляемая без блокировок (CAS)
+@Component
+public class InMemoryRateLimiter extends AbstractRateLimiter<InMemoryRateLimiter.Config> {
+
+	public static final String CONFIGURATION_PROPERTY_NAME = "in-memory-rate-limiter";
+	public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final Config defaultConfig;
+	private final Cache<String, TokenBucket> buckets;
+	private final MeterRegistry meterRegistry;
+	private final Ticker ticker;
+
+	@Autowired
+	public InMemoryRateLimiter(ConfigurationService configurationService,
+			@Value("${gateway.rate-limiter.replenish-rate:20}") int defaultReplenishRate,
+			@Value("${gateway.rate-limiter.burst-capacity:40}") int defaultBurstCapacity,
+			@Value("${gateway.rate-limiter.idle-timeout:10m}") Duration idleTimeout,
+			@Value("${gateway.rate-limiter.max-buckets:100000}") long maxBuckets,
+			MeterRegistry meterRegistry) {
+		this(configurationService, defaultReplenishRate, defaultBurstCapacity, idleTimeout, maxBuckets, meterRegistry,
+				Ticker.systemTicker());
+	}
+
+	// Конструктор с источником времени для проверки пополнения корзин в тестах
+	InMemoryRateLimiter(ConfigurationService configurationService, int defaultReplenishRate, int defaultBurstCapacity,
+			Duration idleTimeout, long maxBuckets, MeterRegistry meterRegistry, Ticker ticker) {
+		super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+		this.defaultConfig = new Config();
+		this.defaultConfig.setReplenishRate(defaultReplenishRate);
+		this.defaultConfig.setBurstCapacity(defaultBurstCapacity);
+		// Корзины неактивных пользователей удаляются, чтобы память не росла без ограничений
+		this.buckets = Caffeine.newBuilder()
+				.expireAfterAccess(idleTimeout)
+				.maximumSize(maxBuckets)
+				.ticker(ticker)
+				.build();
+		this.meterRegistry = meterRegistry;
+		this.ticker = ticker;
+		Gauge.builder("gateway.rate.limiter.buckets", buckets, Cache::estimatedSize)
+				.description("Token buckets currently tracked by the in-memory rate limiter")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public Mono<Response> isAllowed(String routeId, String id) {
+		Config config = getConfig().getOrDefault(routeId, defaultConfig);
+		if (config.getReplenishRate() <= 0 || config.getBurstCapacity() < config.getRequestedTokens()) {
+			return Mono.error(new IllegalArgumentException("Invalid rate limiter configuration for route " + routeId
+					+ ": " + config));
+		}
+		TokenBucket bucket = buckets.get(routeId + ' ' + id, key -> new TokenBucket(config.getBurstCapacity(), ticker));
+		double remaining = bucket.tryConsume(config);
+		boolean allowed = remaining >= 0;
+		requests(routeId, allowed).increment();
+		if (allowed) {
+			return Mono.just(new Response(true, Map.of(REMAINING_HEADER, Long.toString((long) remaining))));
+		}
+		// Время до накопления недостающих токенов, округлённое вверх до секунд
+		long retryAfterSeconds = Math.max(1, (long) Math.ceil(-remaining / config.getReplenishRate()));
+		return Mono.just(new Response(false, Map.of(REMAINING_HEADER, "0",
+				HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))));
+	}
+
+	private Counter requests(String routeId, boolean allowed) {
+		return Counter.builder("gateway.rate.limiter.requests")
+				.description("Requests checked by the in-memory rate limiter")
+				.tag("route", routeId)
+				.tag("outcome", allowed ? "allowed" : "rejected")
+				.register(meterRegistry);
+	}
+
+	// Корзина токенов одного пользователя на одном маршруте
+	static final class TokenBucket {
+		private final AtomicReference<State> state;
+		private final Ticker ticker;
+
+		TokenBucket(int burstCapacity, Ticker ticker) {
+			this.state = new AtomicReference<>(new State(burstCapacity, ticker.read()));
+			this.ticker = ticker;
+		}
+
+		// Метод для списания токенов: возвращает остаток после списания
+		// или отрицательное число - сколько токенов не хватает
+		double tryConsume(Config config) {
+			while (true) {
+				State current = state.get();
+				long now = ticker.read();
+				double refilled = Math.min(config.getBurstCapacity(), current.tokens()
+						+ (double) (now - current.updatedAtNanos()) * config.getReplenishRate() / NANOS_PER_SECOND);
+				double left = refilled - config.getRequestedTokens();
+				State next = new State(left >= 0 ? left : refilled, now);
+				if (state.compareAndSet(current, next)) {
+					return left;
+				}
+			}
+		}
+
+		private record State(double tokens, long updatedAtNanos) {
+		}
+	}
+
+	public static class Config {
+		// Количество токенов, добавляемых в корзину за секунду
+		private int replenishRate;
+		// Максимальное количество токенов в корзине (допустимый всплеск запросов)
+		private int burstCapacity;
+		// Количество токенов, списываемых за один запрос
+		private int requestedTokens = 1;
+
+		public int getReplenishRate() {
+			return replenishRate;
+		}
+
+		public void setReplenishRate(int replenishRate) {
+			this.replenishRate = replenishRate;
+		}
+
+		public int getBurstCapacity() {
+			return burstCapacity;
+		}
+
+		public void setBurstCapacity(int burstCapacity) {
+			this.burstCapacity = burstCapacity;
+		}
+
+		public int getRequestedTokens() {
+			return requestedTokens;
+		}
+
+		public void setRequestedTokens(int requestedTokens) {
+			this.requestedTokens = requestedTokens;
+		}
+
+		@Override
+		public String toString() {
+			return "Config{replenishRate=" + replenishRate + ", burstCapacity=" + burstCapacity
+					+ ", requestedTokens=" + requestedTokens + '}';
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.itm.space.backend.client.ratelimit;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+// Ключ ограничения частоты - subject токена пользователя; запросы без пользователя
+// получают пустой ключ и отклоняются фильтром RequestRateLimiter
+@Component
+public class SubjectKeyResolver implements KeyResolver {
+
+	@Override
+	public Mono<String> resolve(ServerWebExchange exchange) {
+		return exchange.getPrincipal().map(SubjectKeyResolver::subject);
+	}
+
+	private static String subject(Principal principal) {
+		if (principal instanceof Authentication authentication
+				&& authentication.getPrincipal() instanceof OidcUser oidcUser) {
+			return oidcUser.getSubject();
+		}
+		return principal.getName();
+	}
+}
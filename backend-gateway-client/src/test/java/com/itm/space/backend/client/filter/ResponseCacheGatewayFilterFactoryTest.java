@@ -0,0 +1,300 @@
+package com.itm.space.backend.client.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Тесты кэша ответов шлюза: фильтр вызывается напрямую, ответ сервиса формирует цепочка фильтров теста
+class ResponseCacheGatewayFilterFactoryTest {
+
+	private static final Duration TTL = Duration.ofSeconds(30);
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+	private final AtomicLong nanoTime = new AtomicLong();
+	private String path = "/api/users/1";
+	private HttpStatus upstreamStatus = HttpStatus.OK;
+	private String upstreamVary = HttpHeaders.ACCEPT_ENCODING;
+	private MediaType upstreamContentType = MediaType.APPLICATION_JSON;
+	private String upstreamCacheControl = "private, max-age=60";
+	private String upstreamBody;// null - тело из имени пользователя
+	private Long upstreamContentLength;// null - длина фактического тела, -1 - без Content-Length
+	private GatewayFilter filter;
+
+	@BeforeEach
+	void init() {
+		ResponseCacheGatewayFilterFactory factory = new ResponseCacheGatewayFilterFactory(DataSize.ofMegabytes(1),
+				DataSize.ofKilobytes(64), new SimpleMeterRegistry(), nanoTime::get);
+		ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+		config.setTtl(TTL);
+		filter = factory.apply(config);
+	}
+
+	// Ответ одного пользователя никогда не отдаётся другому
+	@Test
+	void neverSharesEntriesBetweenPrincipals() {
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals("HIT", cacheStatus(get("alice")));
+
+		MockServerHttpResponse bob = get("bob");
+		assertEquals("MISS", cacheStatus(bob));
+		assertEquals("bob", bob.getBodyAsString().block());
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Кэшируются только ответы 200
+	@Test
+	void cachesOnlyOkResponses() {
+		upstreamStatus = HttpStatus.NOT_FOUND;
+		get("alice");
+		get("alice");
+		assertEquals(2, upstreamCalls.get());
+
+		upstreamStatus = HttpStatus.OK;
+		get("alice");
+		assertEquals("HIT", cacheStatus(get("alice")));
+		assertEquals(3, upstreamCalls.get());
+	}
+
+	// Cache-Control: no-cache запрашивает ответ у сервиса и обновляет запись, no-store её не трогает
+	@Test
+	void noCacheBypassesCachedEntry() {
+		get("alice");
+		assertEquals("MISS", cacheStatus(get("alice", headers -> headers.setCacheControl("no-cache"))));
+		assertEquals(2, upstreamCalls.get());
+		assertEquals("HIT", cacheStatus(get("alice")));
+
+		get("alice", headers -> headers.setCacheControl("no-store"));
+		assertEquals(3, upstreamCalls.get());
+	}
+
+	// Запись перестаёт отдаваться по истечении TTL маршрута
+	@Test
+	void expiresEntriesAfterTtl() {
+		get("alice");
+		nanoTime.addAndGet(TTL.minusSeconds(1).toNanos());
+		assertEquals("HIT", cacheStatus(get("alice")));
+
+		nanoTime.addAndGet(Duration.ofSeconds(2).toNanos());
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Запрос без пользователя проходит в сервис ровно один раз и не кэшируется
+	@Test
+	void passesAnonymousRequestsThroughOnce() {
+		get(null);
+		get(null);
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Сжатый ответ не отдаётся из кэша клиенту без Accept-Encoding, несжатый - клиенту с gzip
+	@Test
+	void separatesCompressedAndPlainResponses() {
+		Consumer<HttpHeaders> gzip = headers -> headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+		MockServerHttpResponse compressed = get("alice", gzip);
+		assertEquals("gzip", compressed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		MockServerHttpResponse plain = get("alice");
+		assertEquals("MISS", cacheStatus(plain));
+		assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+		MockServerHttpResponse cachedCompressed = get("alice", gzip);
+		assertEquals("HIT", cacheStatus(cachedCompressed));
+		assertEquals("gzip", cachedCompressed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		MockServerHttpResponse cachedPlain = get("alice");
+		assertEquals("HIT", cacheStatus(cachedPlain));
+		assertNull(cachedPlain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("alice", cachedPlain.getBodyAsString().block());
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Ответ с Vary по заголовку, не входящему в ключ, не кэшируется
+	@Test
+	void skipsResponsesVaryingOnOtherHeaders() {
+		upstreamVary = HttpHeaders.AUTHORIZATION;
+		get("alice");
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Тело передаётся клиенту до того, как сервис закончил его отдавать
+	@Test
+	void forwardsBodyBeforeUpstreamCompletes() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/users/1"));
+		ServerWebExchange authenticated = exchange.mutate().principal(Mono.just((Principal) () -> "alice")).build();
+		List<String> received = new CopyOnWriteArrayList<>();
+		exchange.getResponse().setWriteHandler(body -> body
+				.doOnNext(buffer -> received.add(buffer.toString(StandardCharsets.UTF_8)))
+				.then());
+		Sinks.Many<DataBuffer> upstreamChunks = Sinks.many().unicast().onBackpressureBuffer();
+
+		Mono<Void> result = filter.filter(authenticated, upstream -> {
+			ServerHttpResponse response = upstream.getResponse();
+			response.setStatusCode(HttpStatus.OK);
+			response.getHeaders().setContentLength(10);
+			response.getHeaders().setCacheControl(upstreamCacheControl);
+			return response.writeWith(upstreamChunks.asFlux());
+		});
+		AtomicBoolean completed = new AtomicBoolean();
+		result.subscribe(null, null, () -> completed.set(true));
+		upstreamChunks.tryEmitNext(buffer("first"));
+		assertEquals(List.of("first"), received);
+		assertFalse(completed.get());
+
+		upstreamChunks.tryEmitNext(buffer("-part"));
+		upstreamChunks.tryEmitComplete();
+		assertTrue(completed.get());
+		assertEquals(List.of("first", "-part"), received);
+	}
+
+	// Потоковые ответы (выгрузка NDJSON) не кэшируются
+	@Test
+	void skipsStreamingResponses() {
+		upstreamContentType = MediaType.APPLICATION_NDJSON;
+		get("alice");
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Ответ без Content-Length не кэшируется: размер тела заранее неизвестен
+	@Test
+	void skipsResponsesWithoutContentLength() {
+		upstreamContentLength = -1L;
+		get("alice");
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Ответ больше max-entry-size не кэшируется, даже если Content-Length занижен, но клиент получает его целиком
+	@Test
+	void skipsBodiesLargerThanEntryLimit() {
+		upstreamBody = "x".repeat((int) DataSize.ofKilobytes(64).toBytes() + 1);
+		get("alice");
+		assertEquals(1, upstreamCalls.get());
+		assertEquals("MISS", cacheStatus(get("alice")));
+
+		upstreamContentLength = 10L;
+		get("alice");
+		MockServerHttpResponse response = get("alice");
+		assertEquals("MISS", cacheStatus(response));
+		assertEquals(upstreamBody, response.getBodyAsString().block());
+		assertEquals(4, upstreamCalls.get());
+	}
+
+	// Ответы, для которых сервис не разрешил кэширование, всегда запрашиваются у сервиса
+	@Test
+	void skipsResponsesNotAllowedToBeCached() {
+		// Заголовки Spring Security по умолчанию
+		upstreamCacheControl = "no-cache, no-store, max-age=0, must-revalidate";
+		get("alice");
+		assertEquals("MISS", cacheStatus(get("alice")));
+		upstreamCacheControl = "no-cache, max-age=60";
+		get("alice");
+		upstreamCacheControl = null;
+		get("alice");
+		get("alice");
+		assertEquals(5, upstreamCalls.get());
+	}
+
+	// Запись хранится не дольше max-age ответа, даже если ttl маршрута больше
+	@Test
+	void limitsEntryLifetimeToMaxAge() {
+		upstreamCacheControl = "private, max-age=10";
+		get("alice");
+		nanoTime.addAndGet(Duration.ofSeconds(9).toNanos());
+		assertEquals("HIT", cacheStatus(get("alice")));
+
+		nanoTime.addAndGet(Duration.ofSeconds(2).toNanos());
+		assertEquals("MISS", cacheStatus(get("alice")));
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	// Опрос состояния задачи (ответ с Cache-Control: no-store) через кэш видит изменение состояния
+	@Test
+	void pollsJobStatusThroughCache() {
+		path = "/api/users/jobs/8f2c1d7e-3b4a-4c5d-9e6f-0a1b2c3d4e5f";
+		upstreamCacheControl = "no-store";
+		upstreamBody = "{\"state\":\"QUEUED\"}";
+		assertEquals(upstreamBody, get("alice").getBodyAsString().block());
+
+		upstreamBody = "{\"state\":\"SUCCEEDED\"}";
+		MockServerHttpResponse polled = get("alice");
+		assertEquals("MISS", cacheStatus(polled));
+		assertEquals(upstreamBody, polled.getBodyAsString().block());
+		assertEquals(2, upstreamCalls.get());
+	}
+
+	private MockServerHttpResponse get(String principal) {
+		return get(principal, headers -> {
+		});
+	}
+
+	private MockServerHttpResponse get(String principal, Consumer<HttpHeaders> requestHeaders) {
+		HttpHeaders headers = new HttpHeaders();
+		requestHeaders.accept(headers);
+		MockServerHttpRequest request = MockServerHttpRequest.get(path)
+				.headers(headers)
+				.build();
+		ServerWebExchange exchange = MockServerWebExchange.from(request);
+		if (principal != null) {
+			Principal user = () -> principal;
+			exchange = exchange.mutate().principal(Mono.just(user)).build();
+		}
+		filter.filter(exchange, upstream -> {
+			upstreamCalls.incrementAndGet();
+			ServerHttpResponse response = upstream.getResponse();
+			response.setStatusCode(upstreamStatus);
+			response.getHeaders().set(HttpHeaders.VARY, upstreamVary);
+			response.getHeaders().setContentType(upstreamContentType);
+			if (upstreamCacheControl != null) {
+				response.getHeaders().setCacheControl(upstreamCacheControl);
+			}
+			// Как backend-resources с server.compression: тело сжимается, если клиент передал Accept-Encoding
+			String body = upstreamBody != null ? upstreamBody : String.valueOf(principal);
+			if (upstream.getRequest().getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+				response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+				body = "gzip:" + body;
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			response.getHeaders().setContentLength(upstreamContentLength != null ? upstreamContentLength : bytes.length);
+			return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+		}).block();
+		return (MockServerHttpResponse) exchange.getResponse();
+	}
+
+	private static DataBuffer buffer(String text) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String cacheStatus(ServerHttpResponse response) {
+		return response.getHeaders().getFirst(ResponseCacheGatewayFilterFactory.CACHE_STATUS_HEADER);
+	}
+}
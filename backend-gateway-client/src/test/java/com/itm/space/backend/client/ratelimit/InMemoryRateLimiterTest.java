@@ -0,0 +1,105 @@
+package com.itm.space.backend.client.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter.Response;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// Тесты ограничителя частоты: корзина на 3 токена пополняется одним токеном в секунду,
+// время идёт только по команде теста
+class InMemoryRateLimiterTest {
+
+	private static final String ROUTE = "users";
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private InMemoryRateLimiter rateLimiter;
+
+	@BeforeEach
+	void init() {
+		rateLimiter = new InMemoryRateLimiter(mock(ConfigurationService.class), 20, 40, Duration.ofMinutes(10),
+				1000, new SimpleMeterRegistry(), nanoTime::get);
+		InMemoryRateLimiter.Config config = new InMemoryRateLimiter.Config();
+		config.setReplenishRate(1);
+		config.setBurstCapacity(3);
+		rateLimiter.getConfig().put(ROUTE, config);
+	}
+
+	// Всплеск до burst-capacity пропускается сразу, следующий запрос отклоняется с Retry-After
+	@Test
+	void allowsBurstUpToCapacity() {
+		assertEquals("2", remaining(isAllowed(ROUTE, "alice")));
+		assertEquals("1", remaining(isAllowed(ROUTE, "alice")));
+		assertEquals("0", remaining(isAllowed(ROUTE, "alice")));
+
+		Response rejected = isAllowed(ROUTE, "alice");
+		assertFalse(rejected.isAllowed());
+		assertEquals("0", remaining(rejected));
+		assertEquals("1", rejected.getHeaders().get(HttpHeaders.RETRY_AFTER));
+	}
+
+	// Корзина пополняется со скоростью replenish-rate, но не больше burst-capacity
+	@Test
+	void refillsTokensOverTime() {
+		exhaust(ROUTE, "alice");
+
+		nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertTrue(isAllowed(ROUTE, "alice").isAllowed());
+		assertFalse(isAllowed(ROUTE, "alice").isAllowed());
+
+		nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertEquals("2", remaining(isAllowed(ROUTE, "alice")));
+		assertEquals("1", remaining(isAllowed(ROUTE, "alice")));
+		assertEquals("0", remaining(isAllowed(ROUTE, "alice")));
+		assertFalse(isAllowed(ROUTE, "alice").isAllowed());
+	}
+
+	// У каждого пользователя и маршрута своя корзина
+	@Test
+	void isolatesBucketsPerKey() {
+		exhaust(ROUTE, "alice");
+
+		assertTrue(isAllowed(ROUTE, "bob").isAllowed());
+		// Маршрут без своей конфигурации использует значения по умолчанию
+		assertEquals("39", remaining(isAllowed("export", "alice")));
+		assertFalse(isAllowed(ROUTE, "alice").isAllowed());
+	}
+
+	// Ошибка конфигурации маршрута передаётся через Mono, а не исключением из isAllowed
+	@Test
+	void signalsInvalidConfigurationAsError() {
+		InMemoryRateLimiter.Config config = new InMemoryRateLimiter.Config();
+		config.setReplenishRate(0);
+		config.setBurstCapacity(3);
+		rateLimiter.getConfig().put("invalid", config);
+
+		Mono<Response> result = rateLimiter.isAllowed("invalid", "alice");
+		assertThrows(IllegalArgumentException.class, result::block);
+	}
+
+	private void exhaust(String routeId, String id) {
+		for (int i = 0; i < 3; i++) {
+			assertTrue(isAllowed(routeId, id).isAllowed());
+		}
+		assertFalse(isAllowed(routeId, id).isAllowed());
+	}
+
+	private Response isAllowed(String routeId, String id) {
+		return rateLimiter.isAllowed(routeId, id).block();
+	}
+
+	private static String remaining(Response response) {
+		return response.getHeaders().get(InMemoryRateLimiter.REMAINING_HEADER);
+	}
+}
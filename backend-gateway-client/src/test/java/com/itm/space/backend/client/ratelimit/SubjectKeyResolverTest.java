@@ -0,0 +1,58 @@
+package com.itm.space.backend.client.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Тесты ключа ограничения частоты
+class SubjectKeyResolverTest {
+
+	private final SubjectKeyResolver keyResolver = new SubjectKeyResolver();
+
+	// Для пользователя OIDC ключ - subject токена, а не отображаемое имя
+	@Test
+	void resolvesSubjectOfOidcUser() {
+		OidcIdToken idToken = new OidcIdToken("id-token", Instant.now(), Instant.now().plusSeconds(60),
+				Map.of("sub", "8e2f6c3a", "preferred_username", "mihail"));
+		DefaultOidcUser oidcUser = new DefaultOidcUser(AuthorityUtils.NO_AUTHORITIES, idToken, "preferred_username");
+		OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(oidcUser,
+				AuthorityUtils.NO_AUTHORITIES, "keycloak");
+
+		assertEquals("8e2f6c3a", keyResolver.resolve(exchange(authentication)).block());
+	}
+
+	// Для других пользователей ключ - имя
+	@Test
+	void resolvesNameOfOtherPrincipals() {
+		Principal principal = () -> "mihail";
+
+		assertEquals("mihail", keyResolver.resolve(exchange(principal)).block());
+	}
+
+	// Запрос без пользователя получает пустой ключ
+	@Test
+	void resolvesEmptyKeyWithoutPrincipal() {
+		ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/users/1"));
+
+		assertNull(keyResolver.resolve(exchange).block());
+	}
+
+	private static ServerWebExchange exchange(Principal principal) {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/api/users/1")).mutate()
+				.principal(Mono.just(principal))
+				.build();
+	}
+}
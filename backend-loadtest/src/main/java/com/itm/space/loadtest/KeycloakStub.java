@@ -0,0 +1,425 @@
+package com.itm.space.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Заглушка Keycloak для нагрузочного теста: OIDC discovery, вход по authorization code без формы логина,
+// выдача токенов (authorization_code, refresh_token, client_credentials), JWKS и Admin REST API пользователей.
+// Каждый вход создаёт нового пользователя с ролью MODERATOR. Ответы Admin REST API задерживаются
+// на latency + случайную добавку до jitter, доля errorRate из них завершается ошибкой 503
+public class KeycloakStub implements AutoCloseable {
+    public static final String REALM = "ITM";
+    private static final String REALM_PATH = "/auth/realms/" + REALM;
+    private static final String OIDC_PATH = REALM_PATH + "/protocol/openid-connect";
+    private static final String ADMIN_REALM_PATH = "/auth/admin/realms/" + REALM;
+    private static final String USERS_PATH = ADMIN_REALM_PATH + "/users";
+    private static final Duration TOKEN_LIFESPAN = Duration.ofHours(1);
+
+    private final Duration latency;
+    private final Duration jitter;
+    private final double errorRate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RSAKey signingKey;
+    private final RSASSASigner signer;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService delayScheduler;
+    private final ConcurrentMap<String, Login> codes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Login> refreshTokens = new ConcurrentHashMap<>();
+    private final AtomicLong userSequence = new AtomicLong();
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder tokenRequests = new LongAdder();
+    private final LongAdder adminRequests = new LongAdder();
+    private final LongAdder adminErrors = new LongAdder();
+
+    // Пользователь, вошедший через заглушку
+    private record Login(String subject, String username, String clientId, String nonce) {
+    }
+
+    // Ответ заглушки: статус, тело и заголовок Location
+    private record Reply(int status, Object body, String location) {
+        static Reply json(int status, Object body) {
+            return new Reply(status, body, null);
+        }
+    }
+
+    public KeycloakStub(int port, Duration latency, Duration jitter, double errorRate) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.errorRate = errorRate;
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID("loadtest").generate();
+            this.signer = new RSASSASigner(signingKey);
+        } catch (JOSEException ex) {
+            throw new IllegalStateException("Unable to generate signing key", ex);
+        }
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        this.delayScheduler = Executors.newScheduledThreadPool(2);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        this.server.createContext("/auth/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public String issuer() {
+        return baseUrl() + REALM_PATH;
+    }
+
+    public long logins() {
+        return logins.sum();
+    }
+
+    public long tokenRequests() {
+        return tokenRequests.sum();
+    }
+
+    public long adminRequests() {
+        return adminRequests.sum();
+    }
+
+    public long adminErrors() {
+        return adminErrors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        delayScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith(USERS_PATH)) {
+                handleAdmin(exchange, path.substring(USERS_PATH.length()));
+            } else if (path.equals(ADMIN_REALM_PATH + "/roles")) {
+                // Справочник ролей и групп realm загружается в фоне и не учитывается в запросах Admin REST API
+                send(exchange, Reply.json(200, List.of(role("MODERATOR"), role("default-roles-itm"))));
+            } else if (path.equals(ADMIN_REALM_PATH + "/groups")) {
+                send(exchange, Reply.json(200, List.of(group("Moderators"))));
+            } else if (path.equals(REALM_PATH + "/.well-known/openid-configuration")) {
+                send(exchange, Reply.json(200, discovery()));
+            } else if (path.equals(OIDC_PATH + "/auth")) {
+                send(exchange, authorize(query(exchange)));
+            } else if (path.equals(OIDC_PATH + "/token") && "POST".equals(exchange.getRequestMethod())) {
+                tokenRequests.increment();
+                send(exchange, token(exchange, form(exchange)));
+            } else if (path.equals(OIDC_PATH + "/certs")) {
+                send(exchange, Reply.json(200, new JWKSet(signingKey.toPublicJWK()).toJSONObject()));
+            } else if (path.equals(OIDC_PATH + "/userinfo")) {
+                send(exchange, userInfo(exchange));
+            } else if (path.equals(OIDC_PATH + "/logout")) {
+                send(exchange, Reply.json(204, null));
+            } else {
+                send(exchange, Reply.json(404, Map.of("error", "not_found")));
+            }
+        } catch (RuntimeException ex) {
+            send(exchange, Reply.json(500, Map.of("error", "server_error", "error_description", String.valueOf(ex))));
+        }
+    }
+
+    private Map<String, Object> discovery() {
+        String issuer = issuer();
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put("issuer", issuer);
+        configuration.put("authorization_endpoint", baseUrl() + OIDC_PATH + "/auth");
+        configuration.put("token_endpoint", baseUrl() + OIDC_PATH + "/token");
+        configuration.put("jwks_uri", baseUrl() + OIDC_PATH + "/certs");
+        configuration.put("userinfo_endpoint", baseUrl() + OIDC_PATH + "/userinfo");
+        configuration.put("end_session_endpoint", baseUrl() + OIDC_PATH + "/logout");
+        configuration.put("grant_types_supported", List.of("authorization_code", "refresh_token", "client_credentials"));
+        configuration.put("response_types_supported", List.of("code"));
+        configuration.put("subject_types_supported", List.of("public"));
+        configuration.put("id_token_signing_alg_values_supported", List.of("RS256"));
+        configuration.put("token_endpoint_auth_methods_supported", List.of("client_secret_basic", "client_secret_post"));
+        configuration.put("scopes_supported", List.of("openid", "profile", "email"));
+        return configuration;
+    }
+
+    // Вход без формы логина: сразу перенаправляем обратно с кодом авторизации
+    private Reply authorize(Map<String, String> params) {
+        String redirectUri = params.get("redirect_uri");
+        if (!"code".equals(params.get("response_type")) || redirectUri == null) {
+            return Reply.json(400, Map.of("error", "invalid_request"));
+        }
+        long number = userSequence.incrementAndGet();
+        Login login = new Login(UUID.randomUUID().toString(), "loadtest-user-" + number,
+                params.get("client_id"), params.get("nonce"));
+        String code = UUID.randomUUID().toString();
+        codes.put(code, login);
+        logins.increment();
+        StringBuilder location = new StringBuilder(redirectUri)
+                .append(redirectUri.contains("?") ? '&' : '?')
+                .append("code=").append(encode(code))
+                .append("&session_state=").append(encode(UUID.randomUUID().toString()));
+        if (params.get("state") != null) {
+            location.append("&state=").append(encode(params.get("state")));
+        }
+        return new Reply(302, null, location.toString());
+    }
+
+    private Reply token(HttpExchange exchange, Map<String, String> params) {
+        String clientId = clientId(exchange, params);
+        String grantType = params.getOrDefault("grant_type", "");
+        Login login = switch (grantType) {
+            case "authorization_code" -> codes.remove(params.getOrDefault("code", ""));
+            case "refresh_token" -> refreshTokens.get(params.getOrDefault("refresh_token", ""));
+            // Сервисный аккаунт клиента, например backend-resources для Admin REST API
+            case "client_credentials" -> new Login(UUID.nameUUIDFromBytes(clientId.getBytes(StandardCharsets.UTF_8))
+                    .toString(), "service-account-" + clientId, clientId, null);
+            default -> null;
+        };
+        if (login == null) {
+            return Reply.json(400, Map.of("error", "invalid_grant"));
+        }
+        Instant now = Instant.now();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", accessToken(login, clientId, now));
+        response.put("expires_in", TOKEN_LIFESPAN.toSeconds());
+        response.put("token_type", "Bearer");
+        response.put("not-before-policy", 0);
+        response.put("scope", "openid profile email");
+        if (!"client_credentials".equals(grantType)) {
+            String refreshToken = UUID.randomUUID().toString();
+            refreshTokens.put(refreshToken, login);
+            response.put("refresh_token", refreshToken);
+            response.put("refresh_expires_in", TOKEN_LIFESPAN.toSeconds());
+            response.put("id_token", idToken(login, clientId, now));
+        }
+        return Reply.json(200, response);
+    }
+
+    private Reply userInfo(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return Reply.json(401, Map.of("error", "invalid_token"));
+        }
+        try {
+            JWTClaimsSet claims = SignedJWT.parse(authorization.substring("Bearer ".length())).getJWTClaimsSet();
+            return Reply.json(200, Map.of("sub", claims.getSubject(),
+                    "preferred_username", claims.getStringClaim("preferred_username")));
+        } catch (ParseException ex) {
+            return Reply.json(401, Map.of("error", "invalid_token"));
+        }
+    }
+
+    // Admin REST API: любой ID пользователя существует, данные пользователя выводятся из ID
+    private void handleAdmin(HttpExchange exchange, String userPath) throws IOException {
+        adminRequests.increment();
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        Reply reply;
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            reply = Reply.json(401, Map.of("error", "HTTP 401 Unauthorized"));
+        } else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            adminErrors.increment();
+            reply = Reply.json(503, Map.of("error", "Service Unavailable"));
+        } else {
+            exchange.getRequestBody().readAllBytes();
+            reply = adminReply(exchange.getRequestMethod(), userPath);
+        }
+        long delayNanos = latency.toNanos()
+                + (jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1));
+        // Ответ отправляется из планировщика, чтобы задержка не занимала потоки сервера
+        delayScheduler.schedule(() -> {
+            try {
+                send(exchange, reply);
+            } catch (IOException ex) {
+                exchange.close();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Reply adminReply(String method, String userPath) {
+        if ("POST".equals(method) && userPath.isEmpty()) {
+            return new Reply(201, null, baseUrl() + USERS_PATH + "/" + UUID.randomUUID());
+        }
+        String[] segments = userPath.split("/");
+        if (!"GET".equals(method) || segments.length < 2) {
+            return Reply.json(404, Map.of("error", "HTTP 404 Not Found"));
+        }
+        String id = segments[1];
+        if (segments.length == 2) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("id", id);
+            user.put("username", "user-" + id);
+            user.put("enabled", true);
+            user.put("firstName", "Load");
+            user.put("lastName", "Test");
+            user.put("email", id + "@loadtest.local");
+            return Reply.json(200, user);
+        }
+        if (segments.length == 3 && segments[2].equals("role-mappings")) {
+            return Reply.json(200, Map.of("realmMappings", List.of(role("MODERATOR"), role("default-roles-itm"))));
+        }
+        if (segments.length == 3 && segments[2].equals("groups")) {
+            return Reply.json(200, List.of(group("Moderators")));
+        }
+        return Reply.json(404, Map.of("error", "HTTP 404 Not Found"));
+    }
+
+    private static Map<String, Object> role(String name) {
+        return Map.of("id", UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString(), "name", name);
+    }
+
+    private static Map<String, Object> group(String name) {
+        return Map.of("id", UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString(),
+                "name", name,
+                "path", "/" + name);
+    }
+
+    private String accessToken(Login login, String clientId, Instant issuedAt) {
+        List<String> roles = login.username().startsWith("service-account-")
+                ? List.of("default-roles-itm")
+                : List.of("MODERATOR", "default-roles-itm");
+        return sign(new JWTClaimsSet.Builder(baseClaims(login, issuedAt))
+                .audience("account")
+                .claim("typ", "Bearer")
+                .claim("azp", clientId)
+                .claim("scope", "openid profile email")
+                .claim("realm_access", Map.of("roles", roles))
+                .build(), JOSEObjectType.JWT);
+    }
+
+    private String idToken(Login login, String clientId, Instant issuedAt) {
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder(baseClaims(login, issuedAt))
+                .audience(clientId)
+                .claim("typ", "ID")
+                .claim("azp", clientId)
+                .claim("auth_time", issuedAt.getEpochSecond());
+        if (login.nonce() != null) {
+            claims.claim("nonce", login.nonce());
+        }
+        return sign(claims.build(), JOSEObjectType.JWT);
+    }
+
+    private JWTClaimsSet baseClaims(Login login, Instant issuedAt) {
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer())
+                .subject(login.subject())
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(issuedAt.plus(TOKEN_LIFESPAN)))
+                .claim("preferred_username", login.username())
+                .build();
+    }
+
+    private String sign(JWTClaimsSet claims, JOSEObjectType type) {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .keyID(signingKey.getKeyID())
+                .type(type)
+                .build(), claims);
+        try {
+            jwt.sign(signer);
+        } catch (JOSEException ex) {
+            throw new IllegalStateException("Unable to sign token", ex);
+        }
+        return jwt.serialize();
+    }
+
+    // Идентификатор клиента из заголовка Basic (client_secret_basic) или из тела запроса (client_secret_post)
+    private static String clientId(HttpExchange exchange, Map<String, String> params) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization != null && authorization.startsWith("Basic ")) {
+            String credentials = new String(Base64.getDecoder().decode(authorization.substring("Basic ".length())),
+                    StandardCharsets.UTF_8);
+            int separator = credentials.indexOf(':');
+            return URLDecoder.decode(separator < 0 ? credentials : credentials.substring(0, separator),
+                    StandardCharsets.UTF_8);
+        }
+        return params.getOrDefault("client_id", "unknown");
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        return decode(exchange.getRequestURI().getRawQuery());
+    }
+
+    private static Map<String, String> form(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return decode(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> decode(String encoded) {
+        Map<String, String> params = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return params;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private void send(HttpExchange exchange, Reply reply) throws IOException {
+        try (exchange) {
+            if (reply.location() != null) {
+                exchange.getResponseHeaders().add("Location", reply.location());
+            }
+            byte[] body = reply.body() != null ? objectMapper.writeValueAsBytes(reply.body()) : null;
+            if (body == null) {
+                exchange.sendResponseHeaders(reply.status(), -1);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
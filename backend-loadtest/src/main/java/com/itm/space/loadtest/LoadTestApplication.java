@@ -0,0 +1,115 @@
+package com.itm.space.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Нагрузочный тест цепочки шлюз -> backend-resources -> Keycloak без настоящего Keycloak.
+// Запускает заглушку Keycloak, при необходимости сами приложения с профилем loadtest, выполняет вход
+// пользователей через шлюз и подаёт нагрузку на GET /api/users/{id} шагами с постоянной интенсивностью.
+// Пример: java -jar backend-loadtest/target/loadtest.jar --rates=50,100,200 --step-duration=30s
+//   --resources-jar=backend-resources/target/backend-resources-0.0.1-SNAPSHOT-exec.jar
+//   --gateway-jar=backend-gateway-client/target/backend-gateway-client-0.0.3-SNAPSHOT.jar
+public class LoadTestApplication {
+    private static final long USER_ID_PREFIX = 0x4c6f616454657374L;// Старшие биты ID пользователей в запросах
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (KeycloakStub keycloakStub = new KeycloakStub(options.stubPort(), options.stubLatency(),
+                options.stubJitter(), options.stubErrorRate());
+             ServiceLauncher launcher = new ServiceLauncher()) {
+            keycloakStub.start();
+            System.out.println("Keycloak stub: " + keycloakStub.issuer());
+            if (options.stubOnly()) {
+                System.out.println("Start the applications with --spring.profiles.active=loadtest"
+                        + " --loadtest.keycloak-url=" + keycloakStub.baseUrl() + ", press Ctrl+C to stop");
+                Thread.currentThread().join();
+            }
+            startApplications(options, keycloakStub, launcher);
+            run(options, keycloakStub);
+        }
+    }
+
+    private static void startApplications(LoadTestOptions options, KeycloakStub keycloakStub,
+                                          ServiceLauncher launcher) throws Exception {
+        String keycloakUrl = "--loadtest.keycloak-url=" + keycloakStub.baseUrl();
+        if (options.resourcesJar() != null) {
+            int port = URI.create(options.resourcesUrl()).getPort();
+            System.out.println("Starting backend-resources on port " + port);
+            launcher.start("backend-resources", options.resourcesJar(), port, List.of(
+                    "--spring.profiles.active=loadtest", keycloakUrl, "--server.port=" + port));
+        }
+        if (options.gatewayJar() != null) {
+            int port = URI.create(options.gatewayUrl()).getPort();
+            System.out.println("Starting backend-gateway-client on port " + port);
+            launcher.start("backend-gateway-client", options.gatewayJar(), port, List.of(
+                    "--spring.profiles.active=loadtest", keycloakUrl, "--server.port=" + port,
+                    "--loadtest.resources-url=" + options.resourcesUrl()));
+        }
+    }
+
+    private static void run(LoadTestOptions options, KeycloakStub keycloakStub) throws Exception {
+        ExecutorService clientExecutor = Executors.newCachedThreadPool();
+        try {
+            List<VirtualUser> users = new ArrayList<>(options.users());
+            for (int i = 0; i < options.users(); i++) {
+                VirtualUser user = new VirtualUser(clientExecutor, REQUEST_TIMEOUT);
+                user.login(userUri(options, i));
+                users.add(user);
+            }
+            System.out.println("Logged in " + users.size() + " users through " + options.gatewayUrl());
+
+            OpenModelDriver driver = new OpenModelDriver(users, i -> HttpRequest.newBuilder(
+                            userUri(options, ThreadLocalRandom.current().nextInt(options.userPool())))
+                    .header("Accept", "application/json")
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build(), keycloakStub, options.maxInFlight());
+            if (!options.warmup().isZero()) {
+                System.out.println("Warming up at " + options.rates().get(0) + " req/s for " + options.warmup());
+                driver.run(options.rates().get(0), options.warmup());
+            }
+            System.out.println(StepResult.header());
+            List<StepResult> steps = new ArrayList<>();
+            for (int rate : options.rates()) {
+                StepResult step = driver.run(rate, options.stepDuration());
+                steps.add(step);
+                System.out.println(step.row());
+            }
+            writeResult(options, steps);
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private static URI userUri(LoadTestOptions options, int index) {
+        return URI.create(options.gatewayUrl() + "/api/users/" + new UUID(USER_ID_PREFIX, index));
+    }
+
+    private static void writeResult(LoadTestOptions options, List<StepResult> steps) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", options.users());
+        result.put("userPool", options.userPool());
+        result.put("stepDurationSeconds", options.stepDuration().toSeconds());
+        result.put("stubLatencyMillis", options.stubLatency().toMillis());
+        result.put("stubJitterMillis", options.stubJitter().toMillis());
+        result.put("stubErrorRate", options.stubErrorRate());
+        result.put("steps", steps);
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(options.result().toFile(), result);
+        System.out.println("Results saved to " + options.result());
+    }
+}
@@ -0,0 +1,88 @@
+package com.itm.space.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Параметры нагрузочного теста из аргументов командной строки вида --name=value
+public record LoadTestOptions(
+        List<Integer> rates,// Интенсивности нагрузки по шагам, запросов в секунду
+        Duration stepDuration,// Длительность каждого шага
+        Duration warmup,// Прогрев на первой интенсивности, результаты не учитываются
+        int users,// Количество пользователей со своей сессией в шлюзе
+        int userPool,// Количество разных ID пользователей в запросах (определяет долю попаданий в кэш)
+        String gatewayUrl,
+        String resourcesUrl,
+        Path gatewayJar,// Если указан, шлюз запускается тестом с профилем loadtest
+        Path resourcesJar,// Если указан, backend-resources запускается тестом с профилем loadtest
+        int stubPort,
+        Duration stubLatency,// Задержка ответов Admin REST API заглушки Keycloak
+        Duration stubJitter,// Случайная добавка к задержке от 0 до stubJitter
+        double stubErrorRate,// Доля ответов Admin REST API с ошибкой 503
+        int maxInFlight,// Запросы сверх этого количества незавершённых не отправляются и учитываются как пропущенные
+        Path result,// Файл для результатов в JSON
+        boolean stubOnly) {// Только запустить заглушку Keycloak, например для ручного запуска приложений
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                Arrays.stream(values.getOrDefault("rates", "50,100,200").split(","))
+                        .map(String::trim)
+                        .map(Integer::parseInt)
+                        .toList(),
+                duration(values.getOrDefault("step-duration", "30s")),
+                duration(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("users", "20")),
+                Integer.parseInt(values.getOrDefault("user-pool", "100000")),
+                values.getOrDefault("gateway-url", "http://localhost:9090"),
+                values.getOrDefault("resources-url", "http://localhost:9191"),
+                path(values.get("gateway-jar")),
+                path(values.get("resources-jar")),
+                Integer.parseInt(values.getOrDefault("stub-port", "8180")),
+                duration(values.getOrDefault("stub-latency", "20ms")),
+                duration(values.getOrDefault("stub-jitter", "10ms")),
+                Double.parseDouble(values.getOrDefault("stub-error-rate", "0")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                Path.of(values.getOrDefault("result", "loadtest-result.json")),
+                Boolean.parseBoolean(values.getOrDefault("stub-only", "false")));
+        if (options.rates.isEmpty() || options.rates.stream().anyMatch(rate -> rate <= 0)) {
+            throw new IllegalArgumentException("Rates should be positive");
+        }
+        if (options.users <= 0 || options.userPool <= 0) {
+            throw new IllegalArgumentException("Users and user pool should be positive");
+        }
+        return options;
+    }
+
+    // Метод для разбора длительности в формате Spring: 500ms, 30s, 5m
+    static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+
+    private static Path path(String value) {
+        return value != null ? Path.of(value) : null;
+    }
+}
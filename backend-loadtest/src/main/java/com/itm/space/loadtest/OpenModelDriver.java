@@ -0,0 +1,116 @@
+package com.itm.space.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+// Генератор нагрузки по открытой модели: запросы отправляются по расписанию с заданной интенсивностью
+// независимо от того, ответила ли система на предыдущие. Задержка считается от запланированного
+// момента отправки, поэтому отставание генератора или очередь в системе не скрывают рост задержки
+// (нет coordinated omission, как в замкнутой модели "отправил - дождался - отправил следующий")
+public class OpenModelDriver {
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final List<VirtualUser> users;
+    private final LongFunction<HttpRequest> requests;// Запрос по порядковому номеру
+    private final KeycloakStub keycloakStub;
+    private final int maxInFlight;
+
+    public OpenModelDriver(List<VirtualUser> users, LongFunction<HttpRequest> requests, KeycloakStub keycloakStub,
+                           int maxInFlight) {
+        this.users = users;
+        this.requests = requests;
+        this.keycloakStub = keycloakStub;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Метод для выполнения шага нагрузки с постоянной интенсивностью rate запросов в секунду
+    public StepResult run(int rate, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+        ConcurrentMap<String, LongAdder> statuses = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong lastCompletionNanos = new AtomicLong();
+        long adminRequestsBefore = keycloakStub.adminRequests();
+        long adminErrorsBefore = keycloakStub.adminErrors();
+        long tokenRequestsBefore = keycloakStub.tokenRequests();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = duration.toNanos() / intervalNanos;
+        long startNanos = System.nanoTime();
+        long sent = 0;
+        long skipped = 0;
+        for (long i = 0; i < total; i++) {
+            long intendedNanos = startNanos + i * intervalNanos;
+            long waitNanos;
+            while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                skipped++;
+                continue;
+            }
+            inFlight.incrementAndGet();
+            sent++;
+            users.get((int) (i % users.size()))
+                    .send(requests.apply(i))
+                    .whenComplete((response, ex) -> {
+                        long now = System.nanoTime();
+                        recorder.recordValue(Math.min(now - intendedNanos, MAX_LATENCY_NANOS));
+                        String status = response != null ? String.valueOf(response.statusCode()) : errorName(ex);
+                        statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        lastCompletionNanos.accumulateAndGet(now, Math::max);
+                        inFlight.decrementAndGet();
+                    });
+        }
+        // Ждём ответы на отправленные запросы; запросы ограничены таймаутом клиента, поэтому ожидание конечно
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        Map<String, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        long completed = histogram.getTotalCount();
+        long successful = statusCounts.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("2"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        long endNanos = Math.max(lastCompletionNanos.get(), startNanos + duration.toNanos());
+        double seconds = (endNanos - startNanos) / 1e9;
+        return new StepResult(rate, seconds, sent, skipped, completed, successful,
+                completed / seconds, successful / seconds, statusCounts,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                keycloakStub.adminRequests() - adminRequestsBefore,
+                keycloakStub.adminErrors() - adminErrorsBefore,
+                keycloakStub.tokenRequests() - tokenRequestsBefore);
+    }
+
+    private static String errorName(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause.getClass().getSimpleName();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,75 @@
+package com.itm.space.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Запуск приложений из собранных jar в отдельных процессах; вывод каждого приложения пишется в <name>.log
+public class ServiceLauncher implements AutoCloseable {
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final List<Process> processes = new ArrayList<>();
+
+    // Метод для запуска приложения и ожидания, пока оно начнёт принимать соединения на порту
+    public void start(String name, Path jar, int port, List<String> args) throws IOException, InterruptedException {
+        Process process = launch(name, List.of(), jar, args);
+        Path log = log(name);
+
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (!isListening(port)) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(name + " exited with code " + process.exitValue() + ", see " + log);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(name + " did not start in " + STARTUP_TIMEOUT + ", see " + log);
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    // Метод для запуска приложения с параметрами JVM без ожидания старта; процесс останавливается в close()
+    public Process launch(String name, List<String> jvmArgs, Path jar, List<String> args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(args);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log(name).toFile())
+                .start();
+        processes.add(process);
+        return process;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static Path log(String name) {
+        return Path.of(name + ".log");
+    }
+
+    private static boolean isListening(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port), 500);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.itm.space.loadtest;
+
+import java.util.Map;
+
+// Результат шага нагрузки с постоянной интенсивностью
+public record StepResult(
+        int targetRate,// Заданная интенсивность, запросов в секунду
+        double durationSeconds,// Время от первого запланированного запроса до последнего ответа
+        long sent,
+        long skipped,// Не отправлены из-за лимита незавершённых запросов
+        long completed,// Получен ответ (с любым статусом)
+        long successful,// Получен ответ 2xx
+        double throughput,// Ответов в секунду
+        double successThroughput,// Ответов 2xx в секунду
+        Map<String, Long> statuses,// Количество ответов по статусу, для ошибок без ответа - по типу ошибки
+        double p50Millis,
+        double p90Millis,
+        double p99Millis,
+        double p999Millis,
+        double maxMillis,
+        long keycloakAdminRequests,// Запросы к Admin REST API заглушки Keycloak за шаг
+        long keycloakAdminErrors,// Из них завершены внедрённой ошибкой
+        long keycloakTokenRequests) {
+
+    static String header() {
+        return String.format("%8s %9s %9s %9s %9s %9s %9s %9s %9s %9s %10s",
+                "rate/s", "sent", "skipped", "ok", "tput/s", "ok/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "kc admin");
+    }
+
+    String row() {
+        return String.format("%8d %9d %9d %9d %9.1f %9.1f %9.2f %9.2f %9.2f %9.2f %10d",
+                targetRate, sent, skipped, successful, throughput, successThroughput,
+                p50Millis, p90Millis, p99Millis, maxMillis, keycloakAdminRequests);
+    }
+}
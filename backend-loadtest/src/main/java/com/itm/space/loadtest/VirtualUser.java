@@ -0,0 +1,44 @@
+package com.itm.space.loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Пользователь нагрузочного теста: собственный HTTP-клиент с отдельными cookie, то есть отдельной сессией в шлюзе
+public class VirtualUser {
+    private final HttpClient client;
+
+    public VirtualUser(Executor executor, Duration connectTimeout) {
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.ALWAYS)// Перенаправления входа идут между шлюзом и Keycloak
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    // Метод для входа через шлюз: запрос без сессии перенаправляется на вход в Keycloak, заглушка сразу
+    // возвращает код авторизации, и после обмена кода на токены шлюз возвращает к исходному запросу.
+    // Тип text/html в заголовке Accept нужен, чтобы шлюз перенаправлял на вход, а не отвечал 401
+    public void login(URI uri) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                .header("Accept", "text/html, application/json")
+                .GET()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login through " + uri + " failed with status " + response.statusCode()
+                    + " at " + response.uri() + ": " + response.body());
+        }
+    }
+
+    public CompletableFuture<HttpResponse<Void>> send(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+}
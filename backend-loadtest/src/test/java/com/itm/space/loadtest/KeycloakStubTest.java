@@ -0,0 +1,114 @@
+package com.itm.space.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Тесты заглушки Keycloak и генератора нагрузки без запуска приложений
+public class KeycloakStubTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private KeycloakStub keycloakStub;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        keycloakStub = new KeycloakStub(0, Duration.ofMillis(20), Duration.ZERO, 0);
+        keycloakStub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        keycloakStub.close();
+    }
+
+    // Токен сервисного аккаунта подписан ключом из JWKS, издатель совпадает с OIDC discovery
+    @Test
+    public void issuesTokensVerifiableWithJwks() throws Exception {
+        JsonNode discovery = getJson(keycloakStub.issuer() + "/.well-known/openid-configuration");
+        assertEquals(keycloakStub.issuer(), discovery.get("issuer").asText());
+
+        HttpResponse<String> tokenResponse = client.send(HttpRequest.newBuilder(
+                        URI.create(discovery.get("token_endpoint").asText()))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "grant_type=client_credentials&client_id=backend-resources&client_secret=secret"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, tokenResponse.statusCode());
+        SignedJWT accessToken = SignedJWT.parse(objectMapper.readTree(tokenResponse.body())
+                .get("access_token").asText());
+
+        JWKSet jwks = JWKSet.parse(client.send(HttpRequest.newBuilder(
+                        URI.create(discovery.get("jwks_uri").asText())).build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+        RSAKey key = (RSAKey) jwks.getKeyByKeyId(accessToken.getHeader().getKeyID());
+        assertTrue(accessToken.verify(new RSASSAVerifier(key)));
+        assertEquals(keycloakStub.issuer(), accessToken.getJWTClaimsSet().getIssuer());
+        assertEquals("backend-resources", accessToken.getJWTClaimsSet().getStringClaim("azp"));
+    }
+
+    // Admin REST API отвечает с настроенной задержкой, ответы получаются из ID пользователя
+    @Test
+    public void servesUsersWithConfiguredLatency() throws Exception {
+        String id = UUID.randomUUID().toString();
+        String usersUrl = keycloakStub.baseUrl() + "/auth/admin/realms/ITM/users/" + id;
+
+        long start = System.nanoTime();
+        JsonNode user = getJson(usersUrl);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(20).toNanos());
+        assertEquals(id, user.get("id").asText());
+        assertEquals("MODERATOR", getJson(usersUrl + "/role-mappings").get("realmMappings").get(0).get("name").asText());
+        assertEquals("Moderators", getJson(usersUrl + "/groups").get(0).get("name").asText());
+        assertEquals(3, keycloakStub.adminRequests());
+    }
+
+    // Генератор нагрузки отправляет запросы с заданной интенсивностью и учитывает задержку и статусы ответов
+    @Test
+    public void driverSendsRequestsAtFixedRate() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            String usersUrl = keycloakStub.baseUrl() + "/auth/admin/realms/ITM/users/";
+            OpenModelDriver driver = new OpenModelDriver(List.of(new VirtualUser(executor, Duration.ofSeconds(5))),
+                    i -> HttpRequest.newBuilder(URI.create(usersUrl + new UUID(0, i)))
+                            .header("Authorization", "Bearer token")
+                            .build(), keycloakStub, 1000);
+
+            StepResult result = driver.run(100, Duration.ofSeconds(1));
+
+            assertEquals(100, result.sent());
+            assertEquals(100, result.successful());
+            assertEquals(Map.of("200", 100L), result.statuses());
+            assertEquals(100, result.keycloakAdminRequests());
+            assertTrue(result.p50Millis() >= 20);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer token")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+}
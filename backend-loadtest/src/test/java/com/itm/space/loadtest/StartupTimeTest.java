@@ -0,0 +1,114 @@
+package com.itm.space.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Время до первого успешного запроса к backend-resources, собранному с Maven-профилем fast-start (AOT и AppCDS):
+// от запуска процесса до ответа 200 на GET /api/users/{id} с токеном пользователя, выданным заглушкой Keycloak.
+// Без сборки с -Pfast-start тест пропускается. Каталог сборки и допустимое время задаются свойствами
+// startup.resources-target и startup.max-time-to-first-request (ISO-8601, например PT10S)
+public class StartupTimeTest {
+    private static final Path RESOURCES_TARGET =
+            Path.of(System.getProperty("startup.resources-target", "../backend-resources/target"));
+    private static final Duration MAX_TIME_TO_FIRST_REQUEST =
+            Duration.parse(System.getProperty("startup.max-time-to-first-request", "PT10S"));
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @Test
+    public void servesFirstRequestWithinBudget() throws Exception {
+        Path jar = RESOURCES_TARGET.resolve("backend-resources-0.0.1-SNAPSHOT.jar");
+        Path archive = RESOURCES_TARGET.resolve("backend-resources.jsa");
+        assumeTrue(Files.exists(archive), "backend-resources is not built with -Pfast-start");
+
+        try (KeycloakStub keycloakStub = new KeycloakStub(0, Duration.ZERO, Duration.ZERO, 0);
+             ServiceLauncher launcher = new ServiceLauncher()) {
+            keycloakStub.start();
+            String accessToken = userAccessToken(keycloakStub);
+            int port = freePort();
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/api/users/" + UUID.randomUUID()))
+                    .header("Authorization", "Bearer " + accessToken)
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+
+            long startedAt = System.nanoTime();
+            Process process = launcher.launch("backend-resources-startup",
+                    List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true"), jar,
+                    List.of("--spring.profiles.active=fast-start,loadtest",
+                            "--loadtest.keycloak-url=" + keycloakStub.baseUrl(), "--server.port=" + port));
+            Duration timeToFirstRequest = awaitFirstSuccess(process, request, startedAt);
+
+            System.out.println("Time to first successful request: " + timeToFirstRequest.toMillis() + " ms");
+            assertTrue(timeToFirstRequest.compareTo(MAX_TIME_TO_FIRST_REQUEST) <= 0, "Time to first request "
+                    + timeToFirstRequest.toMillis() + " ms exceeds " + MAX_TIME_TO_FIRST_REQUEST.toMillis() + " ms");
+        }
+    }
+
+    // Метод для повторения запроса, пока приложение не ответит 200; до старта сервера соединение отклоняется
+    private Duration awaitFirstSuccess(Process process, HttpRequest request, long startedAt) throws Exception {
+        long deadline = startedAt + STARTUP_TIMEOUT.toNanos();
+        String lastResult = "no response";
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                fail("backend-resources exited with code " + process.exitValue()
+                        + ", see backend-resources-startup.log");
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return Duration.ofNanos(System.nanoTime() - startedAt);
+                }
+                lastResult = response.statusCode() + " " + response.body();
+            } catch (IOException ex) {
+                lastResult = ex.toString();
+            }
+            Thread.sleep(20);
+        }
+        return fail("backend-resources did not serve a request in " + STARTUP_TIMEOUT + ", last result: "
+                + lastResult);
+    }
+
+    // Метод для входа пользователя в заглушке Keycloak по authorization code без шлюза
+    private String userAccessToken(KeycloakStub keycloakStub) throws Exception {
+        String oidc = keycloakStub.issuer() + "/protocol/openid-connect";
+        HttpResponse<Void> authorization = client.send(HttpRequest.newBuilder(URI.create(oidc
+                        + "/auth?response_type=code&client_id=backend-gateway-client&redirect_uri=http://localhost/"))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        String location = authorization.headers().firstValue("Location").orElseThrow();
+        String code = location.substring(location.indexOf("code=") + "code=".length()).split("&")[0];
+        HttpResponse<String> token = client.send(HttpRequest.newBuilder(URI.create(oidc + "/token"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("grant_type=authorization_code&code=" + code
+                        + "&client_id=backend-gateway-client&client_secret=secret"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readTree(token.body()).get("access_token").asText();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
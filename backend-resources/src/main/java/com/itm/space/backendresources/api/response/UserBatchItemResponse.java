@@ -0,0 +1,13 @@
+package com.itm.space.backendresources.api.response;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+public class UserBatchItemResponse {
+    private final int index;
+    private final UUID id;
+    private final int status;
+    private final String error;
+}
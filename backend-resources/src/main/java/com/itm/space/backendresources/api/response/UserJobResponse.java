@@ -0,0 +1,18 @@
+package com.itm.space.backendresources.api.response;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+public class UserJobResponse {
+    private final UUID id;
+    private final State state;
+    private final UUID userId;// ID созданного пользователя после успешного выполнения
+    private final Integer status;// HTTP-статус создания после завершения задачи
+    private final String error;
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+}
@@ -1,6 +1,10 @@
 package com.itm.space.backendresources.api.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 
 import java.util.List;
 
@@ -11,4 +15,17 @@ public class UserResponse {
     private final String email;
     private final List<String> roles;
     private final List<String> groups;
+    // Ответ собран из последних известных данных, потому что Keycloak недоступен; передаётся заголовком, а не в теле
+    // и не участвует в сравнении: устаревшая копия равна свежему ответу с теми же данными
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    private boolean stale;
+
+    // Метод для получения копии ответа с пометкой об устаревании
+    public UserResponse asStale() {
+        UserResponse copy = new UserResponse(firstName, lastName, email, roles, groups);
+        copy.stale = true;
+        return copy;
+    }
 }
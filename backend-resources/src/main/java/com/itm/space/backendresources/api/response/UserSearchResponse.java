@@ -0,0 +1,14 @@
+package com.itm.space.backendresources.api.response;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+public class UserSearchResponse {
+    private final UUID id;
+    private final String username;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+}
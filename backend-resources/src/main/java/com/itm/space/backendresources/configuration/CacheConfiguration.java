@@ -0,0 +1,40 @@
+package com.itm.space.backendresources.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itm.space.backendresources.api.response.UserResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// Включает кэширование; провайдер, TTL и размер кэша задаются в application.yaml (spring.cache.*)
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+    // Имя кэша ответов с данными пользователей, ключ - UUID пользователя
+    public static final String USERS_CACHE = "users";
+
+    // Последние известные данные пользователей хранятся дольше основного кэша
+    @Value("${users.stale.max-size:10000}")
+    private long staleMaxSize;
+    @Value("${users.stale.ttl:24h}")
+    private Duration staleTtl;
+
+    // Метод, создающий хранилище последних известных данных пользователей,
+    // которые отдаются с пометкой об устаревании, пока Keycloak недоступен
+    @Bean
+    public Cache<UUID, UserResponse> lastKnownUsers(MeterRegistry meterRegistry) {
+        Cache<UUID, UserResponse> lastKnownUsers = Caffeine.newBuilder()
+                .maximumSize(staleMaxSize)
+                .expireAfterWrite(staleTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, lastKnownUsers, "lastKnownUsers");
+    }
+}
@@ -0,0 +1,128 @@
+package com.itm.space.backendresources.configuration;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Источник ключей подписи JWT: набор ключей загружается при старте, обновляется в фоне
+// и перезапрашивается (не чаще заданного интервала), если в токене пришёл неизвестный kid
+@Slf4j
+public class CachingJwkSource implements JWKSource<SecurityContext>, DisposableBean {
+    private static final int JWKS_SIZE_LIMIT = 512 * 1024;
+
+    private final URL jwkSetUrl;// URL набора ключей Keycloak (не используется, если задан локальный файл)
+    private final Resource jwkSetFile;// Локальный файл с набором ключей, например для тестов
+    private final Duration unknownKidMinInterval;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile JWKSet jwkSet = new JWKSet();
+    private final AtomicLong lastRefreshMillis = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    public CachingJwkSource(URL jwkSetUrl, Resource jwkSetFile, Duration refreshInterval,
+                            Duration unknownKidMinInterval, Duration timeout, MeterRegistry meterRegistry) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.jwkSetFile = jwkSetFile;
+        this.unknownKidMinInterval = unknownKidMinInterval;
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.hits = Counter.builder("jwks.key.cache").tag("result", "hit")
+                .description("Signing key lookups served from the local JWKS cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jwks.key.cache").tag("result", "miss")
+                .description("Signing key lookups with a key id missing from the local JWKS cache")
+                .register(meterRegistry);
+        // Прогреваем кэш ключей до первого запроса
+        refresh("startup");
+        if (jwkSetFile == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+            scheduler.scheduleWithFixedDelay(() -> refresh("scheduled"),
+                    refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+        if (!keys.isEmpty()) {
+            hits.increment();
+            return keys;
+        }
+        misses.increment();
+        // Неизвестный kid: возможно, ключи в Keycloak сменились - перезапрашиваем набор с ограничением частоты
+        long last = lastRefreshMillis.get();
+        long now = System.currentTimeMillis();
+        if (now - last >= unknownKidMinInterval.toMillis() && lastRefreshMillis.compareAndSet(last, now)) {
+            refresh("unknown-kid");
+            keys = jwkSelector.select(jwkSet);
+        }
+        return keys;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Метод для загрузки набора ключей; при ошибке остаётся предыдущий набор
+    private void refresh(String trigger) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            jwkSet = load();
+            lastRefreshMillis.set(System.currentTimeMillis());
+            outcome = "success";
+        } catch (IOException | ParseException ex) {
+            log.warn("Failed to load JWKS on {}: {}", trigger, ex.getMessage());
+        } finally {
+            sample.stop(Timer.builder("jwks.refresh")
+                    .description("Time spent loading the JWKS used to verify access tokens")
+                    .tag("trigger", trigger)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private JWKSet load() throws IOException, ParseException {
+        if (jwkSetFile != null) {
+            try (InputStream inputStream = jwkSetFile.getInputStream()) {
+                return JWKSet.load(inputStream);
+            }
+        }
+        int timeoutMillis = (int) timeout.toMillis();
+        return JWKSet.load(jwkSetUrl, timeoutMillis, timeoutMillis, JWKS_SIZE_LIMIT);
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jwks-refresh-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,26 @@
+package com.itm.space.backendresources.configuration;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Бинарный формат CBOR для сервисов-клиентов API: тела запросов и ответов выбираются по Content-Type и Accept,
+// без Accept ответы по-прежнему в JSON, потому что конвертер CBOR стоит в списке после конвертера JSON
+@Configuration
+public class CborConfiguration {
+    // Медиатип последовательности CBOR-объектов (RFC 8742) для потоковой выгрузки пользователей
+    public static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+    public static final MediaType APPLICATION_CBOR_SEQ = MediaType.valueOf(APPLICATION_CBOR_SEQ_VALUE);
+
+    // Метод, создающий конвертер CBOR с теми же настройками Jackson, что и у JSON (spring.jackson.*, модули);
+    // заменяет конвертер CBOR по умолчанию на его месте в списке конвертеров
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false)
+                .factory(new CBORFactory())
+                .build());
+    }
+}
@@ -0,0 +1,61 @@
+package com.itm.space.backendresources.configuration;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+
+// Декодер JWT с заранее загруженным набором ключей вместо ленивого OIDC discovery.
+// Включается свойством jwt.jwks.prefetch, иначе используется декодер Spring Boot по issuer-uri
+@Configuration
+@ConditionalOnProperty(name = "jwt.jwks.prefetch", havingValue = "true")
+public class JwtDecoderConfiguration {
+    // Издатель токенов, проверяется в поле iss
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuerUri;
+    // URL набора ключей; по умолчанию - стандартный путь Keycloak относительно издателя
+    @Value("${jwt.jwks.uri:${spring.security.oauth2.resourceserver.jwt.issuer-uri}/protocol/openid-connect/certs}")
+    private String jwkSetUri;
+    // Локальный файл с набором ключей (classpath: или file:), если задан - ключи берутся только из него
+    @Value("${jwt.jwks.file:#{null}}")
+    private Resource jwkSetFile;
+    @Value("${jwt.jwks.refresh-interval:5m}")
+    private Duration refreshInterval;
+    @Value("${jwt.jwks.unknown-kid-min-interval:30s}")
+    private Duration unknownKidMinInterval;
+    @Value("${jwt.jwks.timeout:2s}")
+    private Duration timeout;
+
+    // Метод, создающий источник ключей с прогревом при старте и фоновым обновлением
+    @Bean
+    public CachingJwkSource cachingJwkSource(MeterRegistry meterRegistry) throws MalformedURLException {
+        return new CachingJwkSource(new URL(jwkSetUri), jwkSetFile, refreshInterval, unknownKidMinInterval,
+                timeout, meterRegistry);
+    }
+
+    // Метод, создающий декодер JWT поверх кэшированного источника ключей
+    @Bean
+    public JwtDecoder jwtDecoder(CachingJwkSource cachingJwkSource) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.Family.RSA, cachingJwkSource));
+        // Проверка полей токена выполняется валидатором Spring Security
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return jwtDecoder;
+    }
+}
@@ -0,0 +1,143 @@
+package com.itm.space.backendresources.configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Хранит токен сервисного аккаунта Keycloak и обновляет его в фоне до истечения срока действия.
+// Потоки запросов читают токен без блокировок; синхронное обновление выполняется только если фоновое не успело
+@Slf4j
+public class KeycloakAccessTokenProvider implements DisposableBean {
+    private final TokenManager tokenManager;// Выполняет запрос токена по гранту CLIENT_CREDENTIALS
+    private final Duration refreshBeforeExpiry;// За сколько до истечения срока обновлять токен в фоне
+    private final Duration minValidity;// Минимальный оставшийся срок действия токена для использования в запросе
+    private final Duration retryInterval;// Пауза перед повторной попыткой после ошибки фонового обновления
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;// Источник времени для срока действия токена
+
+    private final AtomicReference<CachedToken> currentToken = new AtomicReference<>();
+    private final Object refreshLock = new Object();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+    public KeycloakAccessTokenProvider(TokenManager tokenManager, Duration refreshBeforeExpiry, Duration minValidity,
+                                       Duration retryInterval, MeterRegistry meterRegistry, Clock clock) {
+        this.tokenManager = tokenManager;
+        this.refreshBeforeExpiry = refreshBeforeExpiry;
+        this.minValidity = minValidity;
+        this.retryInterval = retryInterval;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        Gauge.builder("keycloak.admin.token.age", this, KeycloakAccessTokenProvider::tokenAgeSeconds)
+                .description("Seconds since the current admin access token was obtained")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        // Получаем первый токен в фоне, чтобы первый запрос не ждал его
+        scheduler.execute(this::refreshInBackground);
+    }
+
+    // Метод для получения актуального токена: без блокировок, пока токен действителен
+    public String getAccessTokenString() {
+        String token = getValidAccessTokenString();
+        return token != null ? token : refreshSynchronously();
+    }
+
+    // Метод для получения действительного токена без обращения к Keycloak; null, если токен нужно обновить
+    public String getValidAccessTokenString() {
+        CachedToken token = currentToken.get();
+        return token != null && token.isValidFor(minValidity, clock) ? token.value() : null;
+    }
+
+    // Метод для сброса токена, отклонённого Keycloak (ответ 401): следующий запрос получит новый токен
+    public void invalidate(String tokenValue) {
+        CachedToken token = currentToken.get();
+        if (token != null && token.value().equals(tokenValue)) {
+            currentToken.compareAndSet(token, null);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    // Метод для синхронного обновления токена: только один поток запрашивает токен, остальные ждут его
+    private String refreshSynchronously() {
+        synchronized (refreshLock) {
+            CachedToken token = currentToken.get();
+            if (token != null && token.isValidFor(minValidity, clock)) {
+                return token.value();
+            }
+            return grant("sync").value();
+        }
+    }
+
+    // Метод для фонового обновления токена с планированием следующего обновления
+    private void refreshInBackground() {
+        long delayMillis;
+        try {
+            CachedToken token;
+            synchronized (refreshLock) {
+                token = grant("background");
+            }
+            long untilExpiry = token.expiresAtMillis() - clock.millis();
+            delayMillis = Math.max(untilExpiry - refreshBeforeExpiry.toMillis(), Duration.ofSeconds(1).toMillis());
+        } catch (RuntimeException ex) {
+            log.warn("Background refresh of the Keycloak admin token failed: {}", ex.getMessage());
+            delayMillis = retryInterval.toMillis();
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refreshInBackground, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Метод для запроса нового токена в Keycloak с замером времени
+    private CachedToken grant(String mode) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            long obtainedAt = clock.millis();
+            AccessTokenResponse response = tokenManager.grantToken();
+            CachedToken token = new CachedToken(response.getToken(), obtainedAt,
+                    obtainedAt + TimeUnit.SECONDS.toMillis(response.getExpiresIn()));
+            currentToken.set(token);
+            outcome = "success";
+            return token;
+        } finally {
+            sample.stop(Timer.builder("keycloak.admin.token.refresh")
+                    .description("Latency of admin access token requests to Keycloak")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private double tokenAgeSeconds() {
+        CachedToken token = currentToken.get();
+        return token == null ? Double.NaN : (clock.millis() - token.obtainedAtMillis()) / 1000.0;
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("keycloak-token-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private record CachedToken(String value, long obtainedAtMillis, long expiresAtMillis) {
+        boolean isValidFor(Duration validity, Clock clock) {
+            return clock.millis() + validity.toMillis() < expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.itm.space.backendresources.configuration;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+// Подставляет в запросы к Admin API Keycloak токен из KeycloakAccessTokenProvider
+// и сбрасывает токен, если Keycloak ответил 401
+@RequiredArgsConstructor
+public class KeycloakBearerTokenFilter implements ClientRequestFilter, ClientResponseFilter {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final KeycloakAccessTokenProvider tokenProvider;
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        // Заменяем заголовок, выставленный стандартным фильтром клиента Keycloak
+        requestContext.getHeaders().putSingle(HttpHeaders.AUTHORIZATION,
+                BEARER_PREFIX + tokenProvider.getAccessTokenString());
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) {
+        if (responseContext.getStatus() == Response.Status.UNAUTHORIZED.getStatusCode()) {
+            Object authorization = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            if (authorization instanceof String header && header.startsWith(BEARER_PREFIX)) {
+                tokenProvider.invalidate(header.substring(BEARER_PREFIX.length()));
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.itm.space.backendresources.configuration;
+
+import com.itm.space.backendresources.service.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class KeycloakBulkheadConfiguration {
+    // Начальное, минимальное и максимальное количество одновременных запросов к Keycloak
+    @Value("${keycloak.bulkhead.initial-limit:20}")
+    private int initialLimit;
+    @Value("${keycloak.bulkhead.min-limit:4}")
+    private int minLimit;
+    @Value("${keycloak.bulkhead.max-limit:64}")
+    private int maxLimit;
+    // Допустимое превышение средней задержки, при котором лимит ещё не уменьшается
+    @Value("${keycloak.bulkhead.rtt-tolerance:1.5}")
+    private double rttTolerance;
+    @Value("${keycloak.bulkhead.smoothing:0.2}")
+    private double smoothing;
+    // Количество замеров, за которое усредняется долгосрочная задержка
+    @Value("${keycloak.bulkhead.long-rtt-window:600}")
+    private int longRttWindow;
+
+    // Метод, создающий адаптивный лимит одновременных запросов к Keycloak и его метрики
+    @Bean
+    public AdaptiveConcurrencyLimiter keycloakConcurrencyLimiter(MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                rttTolerance, smoothing, longRttWindow);
+        Gauge.builder("keycloak.bulkhead.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive limit of concurrent Keycloak admin calls")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.bulkhead.inflight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Keycloak admin calls currently in flight")
+                .register(meterRegistry);
+        FunctionCounter.builder("keycloak.bulkhead.rejected", limiter, AdaptiveConcurrencyLimiter::rejectedCount)
+                .description("Keycloak admin calls rejected because the concurrency limit was reached")
+                .register(meterRegistry);
+        return limiter;
+    }
+}
@@ -0,0 +1,49 @@
+package com.itm.space.backendresources.configuration;
+
+import com.itm.space.backendresources.service.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class KeycloakCircuitBreakerConfiguration {
+    // Пороги доли ошибок и медленных вызовов (в процентах) для размыкания выключателя
+    @Value("${keycloak.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+    @Value("${keycloak.circuit-breaker.slow-call-rate-threshold:50}")
+    private int slowCallRateThreshold;
+    @Value("${keycloak.circuit-breaker.slow-call-duration:2s}")
+    private Duration slowCallDuration;
+    // Размер окна последних вызовов и минимальное количество вызовов для расчёта долей
+    @Value("${keycloak.circuit-breaker.sliding-window-size:20}")
+    private int slidingWindowSize;
+    @Value("${keycloak.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+    // Время, в течение которого запросы к Keycloak не выполняются после размыкания
+    @Value("${keycloak.circuit-breaker.wait-in-open:10s}")
+    private Duration waitInOpen;
+    @Value("${keycloak.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    // Метод, создающий автоматический выключатель для чтения пользователей из Keycloak и его метрики
+    @Bean
+    public CircuitBreaker keycloakCircuitBreaker(MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(failureRateThreshold, slowCallRateThreshold,
+                slowCallDuration, slidingWindowSize, minimumCalls, waitInOpen, halfOpenCalls);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("keycloak.circuit.state", circuitBreaker, breaker -> breaker.state() == state ? 1 : 0)
+                    .description("Whether the Keycloak read circuit breaker is in the given state")
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("keycloak.circuit.not.permitted", circuitBreaker, CircuitBreaker::notPermittedCount)
+                .description("Keycloak reads rejected because the circuit breaker was open")
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+}
@@ -1,16 +1,46 @@
 package com.itm.space.backendresources.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+import org.keycloak.admin.client.Config;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
+import org.keycloak.admin.client.token.TokenManager;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.AbstractLazyCreationTargetSource;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.ws.rs.Priorities;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
 import static org.keycloak.OAuth2Constants.PASSWORD;
 
 @Configuration
 public class KeycloakClientConfiguration {
+    // Значение-заглушка: реальный токен подставляет KeycloakBearerTokenFilter
+    private static final String DELEGATED_AUTHORIZATION = "delegated";
+
     //Получение значения секрета клиента из файла конфигурации
     @Value("${keycloak.credentials.secret}")
     private String secretKey;
@@ -24,15 +54,161 @@ public class KeycloakClientConfiguration {
     @Value("${keycloak.realm}")
     private String realm;
 
+    // Настройки HTTP-транспорта клиента Keycloak
+    @Value("${keycloak.http.max-connections:64}")
+    private int maxConnections;
+    @Value("${keycloak.http.max-connections-per-route:64}")
+    private int maxConnectionsPerRoute;
+    @Value("${keycloak.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+    @Value("${keycloak.http.read-timeout:5s}")
+    private Duration readTimeout;
+    @Value("${keycloak.http.connection-request-timeout:2s}")
+    private Duration connectionRequestTimeout;
+    @Value("${keycloak.http.keep-alive:30s}")
+    private Duration keepAlive;
+    @Value("${keycloak.http.idle-timeout:60s}")
+    private Duration idleTimeout;
+    @Value("${keycloak.http.validate-after-inactivity:2s}")
+    private Duration validateAfterInactivity;
+
+    // Создавать клиент Keycloak и клиент получения токена при первом обращении, а не при создании бинов:
+    // создание RESTEasy-клиентов (загрузка и регистрация провайдеров JAX-RS) уходит из основного потока старта
+    // в поток первого обращения. Первыми обращаются фоновые задачи сразу после старта (обновление токена,
+    // справочник realm, индекс поиска), поэтому клиенты создаются в них, а не при первом запросе API
+    @Value("${keycloak.client.lazy:false}")
+    private boolean lazyClient;
+
+    // Настройки фонового обновления токена сервисного аккаунта
+    @Value("${keycloak.token.refresh-before-expiry:30s}")
+    private Duration refreshBeforeExpiry;
+    @Value("${keycloak.token.min-validity:5s}")
+    private Duration minTokenValidity;
+    @Value("${keycloak.token.retry-interval:10s}")
+    private Duration tokenRetryInterval;
+
+    // Метод, создающий пул HTTP-соединений к Keycloak
+    @Bean
+    public PoolingHttpClientConnectionManager keycloakConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);// Общее количество соединений в пуле
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);// Количество соединений к одному хосту
+        // Проверяем соединение перед повторным использованием, если оно простаивало дольше заданного времени
+        connectionManager.setValidateAfterInactivity((int) validateAfterInactivity.toMillis());
+        return connectionManager;
+    }
+
+    // Метод, публикующий метрики пула соединений (занятые, свободные, ожидающие)
+    @Bean
+    public MeterBinder keycloakConnectionPoolMetrics(PoolingHttpClientConnectionManager keycloakConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(keycloakConnectionManager, "keycloak");
+    }
+
+    // Метод, создающий HTTP-клиент с пулом соединений, общий для всех запросов к Keycloak
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient keycloakHttpClient(PoolingHttpClientConnectionManager keycloakConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())// Время установки соединения
+                .setSocketTimeout((int) readTimeout.toMillis())// Время ожидания ответа
+                .setConnectionRequestTimeout((int) connectionRequestTimeout.toMillis())// Время ожидания соединения из пула
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(keycloakConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .evictExpiredConnections()// Фоновое закрытие просроченных соединений
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)// и долго простаивающих соединений
+                .build();
+    }
+
+    // Метод, создающий хранилище токена сервисного аккаунта с фоновым обновлением
+    @Bean
+    @ConditionalOnProperty(name = "keycloak.token.proactive-refresh", havingValue = "true", matchIfMissing = true)
+    public KeycloakAccessTokenProvider keycloakAccessTokenProvider(CloseableHttpClient keycloakHttpClient,
+                                                                   MeterRegistry meterRegistry) {
+        Config config = new Config(authUrl, realm, null, null, clientId, secretKey, CLIENT_CREDENTIALS, null);
+        // Запросы токена идут через отдельный RESTEasy-клиент без фильтра авторизации, но по тому же пулу соединений
+        Supplier<TokenManager> tokenManagerFactory =
+                () -> new TokenManager(config, resteasyClient(keycloakHttpClient));
+        TokenManager tokenManager = lazyClient ? lazyProxy(TokenManager.class, tokenManagerFactory)
+                : tokenManagerFactory.get();
+        return new KeycloakAccessTokenProvider(tokenManager, refreshBeforeExpiry, minTokenValidity,
+                tokenRetryInterval, meterRegistry, Clock.systemUTC());
+    }
+
     // Метод, создающий и возвращающий экземпляр Keycloak
     @Bean
-    public Keycloak keycloak() {
+    public Keycloak keycloak(CloseableHttpClient keycloakHttpClient,
+                             ObjectProvider<KeycloakAccessTokenProvider> keycloakAccessTokenProvider) {
+        if (lazyClient) {
+            return lazyProxy(Keycloak.class, () -> createKeycloak(keycloakHttpClient, keycloakAccessTokenProvider));
+        }
+        return createKeycloak(keycloakHttpClient, keycloakAccessTokenProvider);
+    }
+
+    private Keycloak createKeycloak(CloseableHttpClient keycloakHttpClient,
+                                    ObjectProvider<KeycloakAccessTokenProvider> keycloakAccessTokenProvider) {
+        ResteasyClient resteasyClient = resteasyClient(keycloakHttpClient);// Используем HTTP-клиент с пулом соединений
+        KeycloakAccessTokenProvider tokenProvider = keycloakAccessTokenProvider.getIfAvailable();
+        if (tokenProvider != null) {
+            // Токен берётся из хранилища с фоновым обновлением: фильтр выполняется после стандартного
+            // фильтра клиента Keycloak и заменяет заголовок Authorization
+            resteasyClient.register(new KeycloakBearerTokenFilter(tokenProvider), Priorities.USER + 1);
+            return KeycloakBuilder.builder()
+                    .serverUrl(authUrl)
+                    .realm(realm)
+                    .authorization(DELEGATED_AUTHORIZATION)// Отключает встроенный TokenManager клиента Keycloak
+                    .resteasyClient(resteasyClient)
+                    .build();
+        }
         return KeycloakBuilder.builder()// Начинаем создание клиента Keycloak
                 .serverUrl(authUrl)// Устанавливаем URL сервера аутентификации
                 .realm(realm) // Устанавливаем имя реальности
                 .grantType(CLIENT_CREDENTIALS)// Указываем тип гранта (CLIENT_CREDENTIALS)
                 .clientId(clientId)// Устанавливаем идентификатор клиента
                 .clientSecret(secretKey)// Устанавливаем секрет клиента
+                .resteasyClient(resteasyClient)
                 .build();// Создаем и возвращаем экземпляр Keycloak
     }
+
+    // Метод, создающий прокси, который создаёт объект при первом вызове метода. Закрытие ещё не созданного
+    // объекта (например, Keycloak при остановке приложения) ничего не делает, а не создаёт его
+    private static <T> T lazyProxy(Class<T> type, Supplier<T> factory) {
+        AbstractLazyCreationTargetSource targetSource = new AbstractLazyCreationTargetSource() {
+            @Override
+            public synchronized Class<?> getTargetClass() {
+                return type;
+            }
+
+            @Override
+            protected Object createObject() {
+                return factory.get();
+            }
+        };
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTargetSource(targetSource);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) invocation ->
+                "close".equals(invocation.getMethod().getName()) && !targetSource.isInitialized()
+                        ? null : invocation.proceed());
+        return type.cast(proxyFactory.getProxy(type.getClassLoader()));
+    }
+
+    // Метод, создающий RESTEasy-клиент поверх общего Apache HttpClient
+    private ResteasyClient resteasyClient(HttpClient httpClient) {
+        return new ResteasyClientBuilder()
+                // HttpClient закрывается вместе с бином keycloakHttpClient, а не вместе с RESTEasy-клиентом
+                .httpEngine(new ApacheHttpClient43Engine(httpClient, false))
+                .register(JacksonProvider.class, 100)// Тот же провайдер Jackson, что и у клиента Keycloak по умолчанию
+                .build();
+    }
+
+    // Метод, ограничивающий время keep-alive соединения: значение сервера, но не больше заданного
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        long maxKeepAlive = keepAlive.toMillis();
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, maxKeepAlive) : maxKeepAlive;
+        };
+    }
 }
@@ -0,0 +1,73 @@
+package com.itm.space.backendresources.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Configuration
+public class KeycloakExecutorConfiguration {
+    private static final String THREAD_NAME_PREFIX = "keycloak-";
+    private static final String FETCH_THREAD_NAME_PREFIX = "keycloak-fetch-";
+
+    // Максимальное количество одновременных запросов к Keycloak из пула
+    @Value("${keycloak.executor.max-threads:32}")
+    private int maxThreads;
+    // Размер очереди задач, ожидающих свободный поток
+    @Value("${keycloak.executor.queue-capacity:256}")
+    private int queueCapacity;
+    // Использовать виртуальные потоки, если JVM их поддерживает
+    @Value("${keycloak.executor.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    // Метод, создающий ограниченный пул потоков для параллельных запросов к Keycloak
+    @Bean
+    public ExecutorService keycloakExecutor() {
+        return boundedExecutor(THREAD_NAME_PREFIX);
+    }
+
+    // Метод, создающий пул для запросов пользователя, ролей и групп при параллельном получении пользователя.
+    // Задачи keycloakExecutor могут ждать результат такого получения (объединение запросов одного пользователя),
+    // поэтому его запросы выполняются в отдельном пуле и не стоят в очереди за ожидающими их задачами
+    @Bean
+    public ExecutorService keycloakFetchExecutor() {
+        return boundedExecutor(FETCH_THREAD_NAME_PREFIX);
+    }
+
+    private ExecutorService boundedExecutor(String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory(threadNamePrefix),
+                // При переполнении очереди задача выполняется в вызывающем потоке, а не теряется
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Метод, выбирающий фабрику потоков: виртуальные потоки (Java 21+) или обычные потоки-демоны
+    private ThreadFactory threadFactory(String threadNamePrefix) {
+        if (virtualThreads) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class, long.class)
+                        .invoke(builder, threadNamePrefix, 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.info("Virtual threads are not available, falling back to platform threads");
+            }
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,130 @@
+package com.itm.space.backendresources.configuration;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
+import org.keycloak.admin.client.Keycloak;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Неблокирующий клиент Admin REST API Keycloak для ReactiveUserService
+@Configuration
+public class KeycloakWebClientConfiguration {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Value("${keycloak.auth-server-url}")
+    private String authUrl;
+    @Value("${keycloak.realm}")
+    private String realm;
+
+    // Те же настройки транспорта, что и у блокирующего клиента Keycloak
+    @Value("${keycloak.http.max-connections:64}")
+    private int maxConnections;
+    @Value("${keycloak.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+    @Value("${keycloak.http.read-timeout:5s}")
+    private Duration readTimeout;
+    @Value("${keycloak.http.connection-request-timeout:2s}")
+    private Duration connectionRequestTimeout;
+    @Value("${keycloak.http.keep-alive:30s}")
+    private Duration keepAlive;
+    @Value("${keycloak.http.idle-timeout:60s}")
+    private Duration idleTimeout;
+
+    // Метод, создающий WebClient с пулом соединений Reactor Netty и авторизацией токеном сервисного аккаунта
+    @Bean
+    public WebClient keycloakWebClient(WebClient.Builder webClientBuilder, ObjectMapper objectMapper,
+                                       ObjectProvider<KeycloakAccessTokenProvider> keycloakAccessTokenProvider,
+                                       ObjectProvider<Keycloak> keycloak) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("keycloak-reactive")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(connectionRequestTimeout)// Время ожидания соединения из пула
+                .maxIdleTime(keepAlive)// Соединение закрывается, если не использовалось дольше keep-alive
+                .evictInBackground(idleTimeout)// Периодическое закрытие простаивающих соединений
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        // Как и JacksonProvider клиента Keycloak, не передаём пустые поля представлений
+        ObjectMapper keycloakMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        return webClientBuilder
+                .baseUrl(authUrl + "/admin/realms/" + realm)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(
+                            new Jackson2JsonEncoder(keycloakMapper, MediaType.APPLICATION_JSON));
+                    codecs.defaultCodecs().jackson2JsonDecoder(
+                            new Jackson2JsonDecoder(keycloakMapper, MediaType.APPLICATION_JSON));
+                })
+                .filter(bearerToken(tokenSupplier(keycloakAccessTokenProvider, keycloak)))
+                .build();
+    }
+
+    // Метод для выбора источника токена: хранилище с фоновым обновлением или TokenManager клиента Keycloak
+    private static Supplier<TokenSource> tokenSupplier(ObjectProvider<KeycloakAccessTokenProvider> tokenProvider,
+                                                       ObjectProvider<Keycloak> keycloak) {
+        return () -> {
+            KeycloakAccessTokenProvider provider = tokenProvider.getIfAvailable();
+            if (provider != null) {
+                return new TokenSource(provider::getValidAccessTokenString, provider::getAccessTokenString,
+                        provider::invalidate);
+            }
+            // TokenManager не позволяет прочитать токен без возможного обновления, поэтому всегда вне event loop
+            return new TokenSource(() -> null, () -> keycloak.getObject().tokenManager().getAccessTokenString(),
+                    token -> {
+                    });
+        };
+    }
+
+    // Фильтр, добавляющий токен в запрос и сбрасывающий его, если Keycloak ответил 401.
+    // Пока фоновое обновление успевает, получение токена - только чтение из памяти и не блокирует поток
+    private static ExchangeFilterFunction bearerToken(Supplier<TokenSource> tokenSupplier) {
+        return (request, next) -> Mono.defer(() -> {
+            TokenSource tokenSource = tokenSupplier.get();
+            return accessToken(tokenSource).flatMap(token -> {
+                ClientRequest authorized = ClientRequest.from(request)
+                        .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, BEARER_PREFIX + token))
+                        .build();
+                return next.exchange(authorized).doOnNext(response -> {
+                    if (response.statusCode().value() == HttpStatus.UNAUTHORIZED.value()) {
+                        tokenSource.invalidate().accept(token);
+                    }
+                });
+            });
+        });
+    }
+
+    // Метод для получения токена: действительный токен берётся из памяти, а синхронное обновление, блокирующее
+    // поток до ответа Keycloak, выполняется в boundedElastic, а не в потоке event loop
+    private static Mono<String> accessToken(TokenSource tokenSource) {
+        String validToken = tokenSource.validToken().get();
+        if (validToken != null) {
+            return Mono.just(validToken);
+        }
+        return Mono.fromCallable(tokenSource.token()::get).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // validToken - токен без обращения к Keycloak или null, token - токен с синхронным обновлением при необходимости
+    private record TokenSource(Supplier<String> validToken, Supplier<String> token, Consumer<String> invalidate) {
+    }
+}
@@ -1,5 +1,12 @@
 package com.itm.space.backendresources.configuration;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -9,6 +16,7 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -21,29 +29,76 @@ import java.util.Map;
 @EnableWebSecurity// Аннотация, включающая веб-безопасность
 @EnableMethodSecurity(securedEnabled = true)
 public class SecurityConfiguration {
+    private static final String REALM_ACCESS_CLAIM = "realm_access";
+    private static final String ROLES_CLAIM = "roles";
+    private static final String ROLE_PREFIX = "ROLE_";
+    // Кэш авторизаций по набору ролей из токена: наборов ролей в realm немного, поэтому кэш небольшой.
+    // Ключ - отсортированный список имён ролей без повторов, чтобы порядок ролей в токене не создавал новых записей
+    private static final Cache<List<String>, Collection<GrantedAuthority>> AUTHORITIES_CACHE = Caffeine.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    // Роль, необходимая для эндпоинтов actuator кроме health: метрики раскрывают устройство сервиса
+    // (операции Keycloak, размеры пулов и очередей)
+    @Value("${management.access.role:MODERATOR}")
+    private String actuatorRole;
 
     // Метод, создающий и возвращающий объект SecurityFilterChain
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtDecoder jwtDecoder,
+                                                   MeterRegistry meterRegistry) throws Exception {
+        // Время преобразования JWT в токен аутентификации
+        Timer convertTimer = Timer.builder("jwt.convert")
+                .description("Time spent converting a decoded JWT into an authentication token")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
         http
                 .csrf(AbstractHttpConfigurer::disable)// Отключаем защиту CSRF
                 .authorizeHttpRequests(requests -> requests// Настраиваем авторизацию для HTTP-запросов
-                        .anyRequest().permitAll())// Разрешаем доступ ко всем запросам
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole(actuatorRole)
+                        .anyRequest().permitAll())// Доступ к API проверяется аннотациями методов
                 .oauth2ResourceServer()// Настраиваем сервер ресурсов OAuth2
                 .jwt()// Указываем, что будем использовать JWT для аутентификации
-                .jwtAuthenticationConverter(SecurityConfiguration::convertJwtToken);// Указываем метод для преобразования JWT в токен аутентификации
+                .decoder(new TimedJwtDecoder(jwtDecoder, meterRegistry))// Декодер JWT с замером времени
+                // Указываем метод для преобразования JWT в токен аутентификации
+                .jwtAuthenticationConverter(jwt -> convertTimer.record(() -> convertJwtToken(jwt)));
         return http.build();// Строим и возвращаем цепочку фильтров безопасности
     }
 
-    // Метод для преобразования JWT в токен аутентификации
-    private static JwtAuthenticationToken convertJwtToken(Jwt jwt) {
-        Collection<GrantedAuthority> authorities = new ArrayList<>();// Создаем коллекцию для хранения авторизаций
-        JwtAuthenticationToken authenticationToken = new JwtAuthenticationToken(jwt, authorities);// Создаем токен аутентификации
-        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");//Получаем доступ к данным о ролях из JWT
-        List<String> roles = (List<String>) realmAccess.get("roles");// Извлекаем роли из данных о доступе
-        for (String role : roles) {
-            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));// Добавляем каждую роль в коллекцию авторизаций
+    // Метод для преобразования JWT в токен аутентификации; доступен в пакете для бенчмарков
+    static JwtAuthenticationToken convertJwtToken(Jwt jwt) {
+        // Имя аутентификации - subject токена, как и в JwtAuthenticationToken по умолчанию
+        return new JwtAuthenticationToken(jwt, extractAuthorities(jwt), jwt.getSubject());
+    }
+
+    // Метод для получения ролей из JWT: одинаковые наборы ролей разделяют одну неизменяемую коллекцию авторизаций
+    private static Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
+        // Токен без realm_access или без списка ролей не даёт авторизаций
+        if (!(jwt.getClaims().get(REALM_ACCESS_CLAIM) instanceof Map<?, ?> realmAccess)
+                || !(realmAccess.get(ROLES_CLAIM) instanceof List<?> roles)
+                || roles.isEmpty()) {
+            return List.of();
+        }
+        return AUTHORITIES_CACHE.get(roleNames(roles), SecurityConfiguration::toAuthorities);
+    }
+
+    // Метод для нормализации списка ролей: только строки, без повторов, по алфавиту
+    private static List<String> roleNames(List<?> roles) {
+        return roles.stream()
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    // Метод для преобразования списка ролей в коллекцию авторизаций
+    private static Collection<GrantedAuthority> toAuthorities(List<String> roleNames) {
+        List<GrantedAuthority> authorities = new ArrayList<>(roleNames.size());
+        for (String roleName : roleNames) {
+            authorities.add(new SimpleGrantedAuthority(ROLE_PREFIX.concat(roleName).intern()));
         }
-        return new JwtAuthenticationToken(jwt, authorities, authenticationToken.getName());// Возвращаем токен аутентификации с ролями
+        return List.copyOf(authorities);
     }
 }
@@ -0,0 +1,41 @@
+package com.itm.space.backendresources.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+// Обучающий запуск для архива AppCDS (Maven-профиль fast-start): после старта приложение выполняет запрос
+// к /actuator/health, чтобы загрузились и классы обработки запроса, и завершается. JVM, запущенная
+// с -XX:ArchiveClassesAtExit, при завершении записывает все загруженные классы в архив
+@Slf4j
+@Component
+public class StartupTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+    @Value("${startup.training-run:false}")
+    private boolean trainingRun;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!trainingRun) {
+            return;
+        }
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        String port = context.getEnvironment().getProperty("local.server.port");
+        try {
+            HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port
+                    + "/actuator/health").toURL().openConnection();
+            log.info("Training run request completed with status {}", connection.getResponseCode());
+            connection.disconnect();
+        } catch (IOException ex) {
+            log.warn("Training run request failed: {}", ex.getMessage());
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,36 @@
+package com.itm.space.backendresources.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+// Декодер JWT с замером времени декодирования и проверки подписи: метрика jwt.decode по исходу
+@RequiredArgsConstructor
+public class TimedJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";// Ошибка получения ключей или другая ошибка декодера
+        try {
+            Jwt jwt = delegate.decode(token);
+            outcome = "success";
+            return jwt;
+        } catch (BadJwtException ex) {
+            outcome = "invalid";// Токен повреждён, подпись или поля токена не прошли проверку
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder("jwt.decode")
+                    .description("Time spent decoding and verifying bearer tokens")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.itm.space.backendresources.controller;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.service.ReactiveUserService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Те же операции, что и в UserController, но без блокировки потока запроса на время обращения к Keycloak:
+// поток сервлет-контейнера освобождается, ответ отправляется асинхронно по готовности Mono
+@RestController
+@Validated
+@RequestMapping("/api/reactive/users")
+@RequiredArgsConstructor
+public class ReactiveUserController {
+    private final ReactiveUserService reactiveUserService;
+
+    // Метод для создания нового пользователя
+    @PostMapping
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Mono<Void> create(@RequestBody @Valid UserRequest userRequest) {
+        return reactiveUserService.createUser(userRequest);
+    }
+
+    // Метод для пакетного создания пользователей: результат возвращается для каждого пользователя отдельно
+    @PostMapping("/batch")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Mono<List<UserBatchItemResponse>> createBatch(@RequestBody @NotEmpty List<@Valid UserRequest> userRequests) {
+        return reactiveUserService.createUsers(userRequests);
+    }
+
+    // Метод для получения пользователя по ID
+    @GetMapping("/{id}")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Mono<UserResponse> getUserById(@PathVariable UUID id) {
+        return reactiveUserService.getUserById(id);
+    }
+
+    // Метод для получения нескольких пользователей по списку ID: ненайденные пользователи возвращаются как null
+    @PostMapping("/lookup")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Mono<Map<UUID, UserResponse>> lookup(@RequestBody @NotEmpty List<@NotNull UUID> ids) {
+        return reactiveUserService.getUsersByIds(ids);
+    }
+
+    // Метод для тестирования аутентификации
+    @GetMapping("/hello")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Mono<String> hello() {
+        return Mono.just(SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+}
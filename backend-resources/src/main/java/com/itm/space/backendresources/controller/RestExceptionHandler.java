@@ -1,7 +1,13 @@
 package com.itm.space.backendresources.controller;
 
 import com.itm.space.backendresources.exception.BackendResourcesException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Path;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,12 +19,17 @@ import java.util.Map;
 
 // Аннотация, указывающая, что этот класс будет обрабатывать исключения в контроллерах
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class RestExceptionHandler {
+    private final MeterRegistry meterRegistry;// Реестр метрик для подсчёта ошибок валидации
 
     // Метод для обработки исключений типа BackendResourcesException
     @ExceptionHandler(BackendResourcesException.class)
     public ResponseEntity<String> handleException(BackendResourcesException backendResourcesException) {
-        return new ResponseEntity<>(backendResourcesException.getMessage(), backendResourcesException.getHttpStatus());
+        // Тип задаётся явно: иначе текст ошибки был бы отдан с типом из Accept, например application/cbor
+        return ResponseEntity.status(backendResourcesException.getHttpStatus())
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(backendResourcesException.getMessage());
     }
 
     // Устанавливаем статус ответа на BAD_REQUEST (400) для ошибок валидации
@@ -29,8 +40,45 @@ public class RestExceptionHandler {
         Map<String, String> errorMap = new HashMap<>();
         // Перебираем все ошибки полей и добавляем их в карту
         ex.getBindingResult().getFieldErrors()
-                .forEach(error -> errorMap.put(error.getField(), error.getDefaultMessage()));
+                .forEach(error -> {
+                    errorMap.put(error.getField(), error.getDefaultMessage());
+                    countValidationFailure(error.getField(), error.getCode());
+                });
         return errorMap;
     }
 
+    // Устанавливаем статус ответа на BAD_REQUEST (400) для ошибок валидации параметров метода (например, элементов списка)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    // Метод для обработки исключений типа ConstraintViolationException
+    @ExceptionHandler(ConstraintViolationException.class)
+    public Map<String, String> handleConstraintViolation(ConstraintViolationException ex) {
+        Map<String, String> errorMap = new HashMap<>();
+        // Перебираем все нарушения и добавляем их в карту, пропуская имя метода в пути к полю
+        ex.getConstraintViolations()
+                .forEach(violation -> {
+                    String field = fieldPath(violation.getPropertyPath());
+                    errorMap.put(field, violation.getMessage());
+                    countValidationFailure(field,
+                            violation.getConstraintDescriptor().getAnnotation().annotationType().getSimpleName());
+                });
+        return errorMap;
+    }
+
+    // Метод для подсчёта ошибок валидации по полю и нарушенному ограничению.
+    // Индексы элементов списка убираются из имени поля, чтобы количество значений метки было ограничено
+    private void countValidationFailure(String field, String constraint) {
+        Counter.builder("api.validation.failures")
+                .description("Request validation failures by field and constraint")
+                .tag("field", field.replaceAll("\\[\\d+]", "[]"))
+                .tag("constraint", constraint != null ? constraint : "unknown")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Метод для получения пути к полю без имени метода контроллера, например "userRequests[0].email"
+    private static String fieldPath(Path propertyPath) {
+        String path = propertyPath.toString();
+        return path.substring(path.indexOf('.') + 1);
+    }
+
 }
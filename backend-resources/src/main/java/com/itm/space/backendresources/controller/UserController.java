@@ -1,44 +1,223 @@
 package com.itm.space.backendresources.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserJobResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+import com.itm.space.backendresources.configuration.CborConfiguration;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.service.UserCreationJobs;
+import com.itm.space.backendresources.service.UserReadModelSync;
 import com.itm.space.backendresources.service.UserService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.DigestUtils;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
+@Validated// Включает проверку элементов списков в параметрах методов
 @RequestMapping("/api/users")
 @RequiredArgsConstructor// Автоматически генерирует конструктор для всех финальных полей
 public class UserController {
+    // Предупреждение об устаревшем ответе (RFC 7234), если данные отданы без обращения к недоступному Keycloak
+    static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    // Значение заголовка Prefer (RFC 7240) для асинхронного выполнения запроса
+    static final String RESPOND_ASYNC = "respond-async";
+
     private final UserService userService;
+    private final UserCreationJobs userCreationJobs;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;// Для выгрузки в формате CBOR
+    private final ObjectProvider<UserReadModelSync> userReadModelSync;// Есть, только если модель чтения включена
 
-    // Метод для создания нового пользователя
+    // Срок, на который шлюз может сохранить ответ GET /{id} в свой кэш (отдельно для каждого пользователя)
+    @Value("${users.http-cache.max-age:30s}")
+    private Duration userMaxAge;
+
+    // Метод для создания нового пользователя. С заголовком "Prefer: respond-async" запрос только ставится
+    // в очередь: ответ 202 с задачей, состояние которой доступно по ссылке из заголовка Location
     @PostMapping
     @Secured("ROLE_MODERATOR")// Ограничивает доступ к методу для пользователей с ролью "MODERATOR"
     @SecurityRequirement(name = "oauth2_auth_code")// Указывает требование безопасности для Swagger
-    public void create(@RequestBody @Valid UserRequest userRequest) {
+    public ResponseEntity<UserJobResponse> create(@RequestBody @Valid UserRequest userRequest,
+                                                  @RequestHeader(name = "Prefer", required = false) String prefer) {
+        if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            UserJobResponse job = userCreationJobs.submit(userRequest, currentUserName());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/users/jobs/" + job.getId()))
+                    .header("Preference-Applied", RESPOND_ASYNC)
+                    .body(job);
+        }
         userService.createUser(userRequest);// Вызывает сервис для создания пользователя
+        return ResponseEntity.ok().build();
+    }
+
+    // Метод для получения состояния асинхронного создания пользователя: задача доступна только её автору.
+    // Состояние опрашивается до завершения задачи, поэтому запрет кэширования задаётся явно, а не только
+    // заголовками Spring Security по умолчанию
+    @GetMapping("/jobs/{id}")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public ResponseEntity<UserJobResponse> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(userCreationJobs.get(id, currentUserName()));
+    }
+
+    // Метод для пакетного создания пользователей: результат возвращается для каждого пользователя отдельно
+    @PostMapping("/batch")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public List<UserBatchItemResponse> createBatch(@RequestBody @NotEmpty List<@Valid UserRequest> userRequests) {
+        return userService.createUsers(userRequests);// Вызывает сервис для пакетного создания пользователей
     }
 
     // Метод для получения пользователя по ID
     @GetMapping("/{id}")
     @Secured("ROLE_MODERATOR")
     @SecurityRequirement(name = "oauth2_auth_code")
-    public UserResponse getUserById(@PathVariable UUID id) {
-        return userService.getUserById(id);// Вызывает сервис для получения пользователя по ID
+    // Ответ помечается ETag по содержимому: на запрос с совпадающим If-None-Match Spring отвечает 304 без тела.
+    // Пользователь из кэша или модели чтения проверяется без обращения к Keycloak
+    public ResponseEntity<UserResponse> getUserById(@PathVariable UUID id) throws JsonProcessingException {
+        UserResponse userResponse = userService.getUserById(id);// Вызывает сервис для получения пользователя по ID
+        if (userResponse == null) {
+            return ResponseEntity.ok(null);
+        }
+        // Vary задаётся здесь, а не только в VaryByAcceptAdvice: ответ 304 без тела тоже должен его содержать
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag(userResponse)).varyBy(HttpHeaders.ACCEPT);
+        // Остальные ответы получают заголовки Spring Security, запрещающие кэширование. Устаревший ответ
+        // не кэшируется, чтобы после восстановления Keycloak клиенты сразу получили актуальные данные
+        if (userResponse.isStale()) {
+            response.header(HttpHeaders.WARNING, STALE_WARNING).cacheControl(CacheControl.noStore());
+        } else {
+            response.cacheControl(CacheControl.maxAge(userMaxAge).cachePrivate());
+        }
+        return response.body(userResponse);
+    }
+
+    // Метод для получения нескольких пользователей по списку ID: ненайденные пользователи возвращаются как null
+    @PostMapping("/lookup")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public Map<UUID, UserResponse> lookup(@RequestBody @NotEmpty List<@NotNull UUID> ids) {
+        return userService.getUsersByIds(ids);// Вызывает сервис для получения пользователей по списку ID
+    }
+
+    // Метод для поиска пользователей по началу имени пользователя, email, имени или фамилии (для подсказок при вводе).
+    // Несколько слов в запросе должны совпасть с началом разных или одного поля пользователя
+    @GetMapping("/search")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public List<UserSearchResponse> search(@RequestParam @NotBlank String q,
+                                           @RequestParam(defaultValue = "20") @Min(1) @Max(100) int limit) {
+        return userService.searchUsers(q, limit);
+    }
+
+    // Метод для выгрузки всех пользователей в формате NDJSON (один JSON-объект на строку), а с заголовком
+    // "Accept: application/cbor-seq" - последовательностью CBOR-объектов без разделителей.
+    // Пользователи записываются в ответ постранично, после каждой страницы ответ отправляется клиенту.
+    // Тип ответа выставляется перед первой записью, чтобы ошибка до начала выгрузки вернулась обычным ответом
+    @GetMapping("/export")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public void export(@RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                       HttpServletResponse response) throws IOException {
+        boolean cbor = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(CborConfiguration.APPLICATION_CBOR_SEQ::equalsTypeAndSubtype);
+        ObjectMapper mapper = cbor ? cborConverter.getObjectMapper() : objectMapper;
+        String contentType = cbor ? CborConfiguration.APPLICATION_CBOR_SEQ_VALUE : MediaType.APPLICATION_NDJSON_VALUE;
+        JsonGenerator generator = mapper.getFactory().createGenerator(response.getOutputStream());
+        // Поток ответа закрывает контейнер, а генератор не сбрасывает его сам: если выгрузка не началась,
+        // ответ ещё не отправлен и может быть заменён ошибкой
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        if (!cbor) {
+            generator.setRootValueSeparator(null);// Записи разделяются переводом строки, а не пробелом
+        }
+        ObjectWriter writer = mapper.writerFor(UserResponse.class);
+        // Выгрузка пишется в поток ответа напрямую, мимо VaryByAcceptAdvice
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        userService.exportUsers(users -> {
+            try {
+                if (!response.isCommitted()) {
+                    response.setContentType(contentType);
+                }
+                for (UserResponse user : users) {
+                    writer.writeValue(generator, user);
+                    if (!cbor) {
+                        generator.writeRaw('\n');
+                    }
+                }
+                generator.flush();
+                response.flushBuffer();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);// Клиент отключился - выгрузка прекращается
+            }
+        });
+        generator.close();
+        if (!response.isCommitted()) {
+            response.setContentType(contentType);// Пустой realm - пустой ответ
+        }
+    }
+
+    // Метод для полной пересинхронизации локальной модели чтения с Keycloak; обход выполняется в фоне
+    @PostMapping("/read-model/resync")
+    @Secured("ROLE_MODERATOR")
+    @SecurityRequirement(name = "oauth2_auth_code")
+    public ResponseEntity<Void> resyncReadModel() {
+        UserReadModelSync readModelSync = userReadModelSync.getIfAvailable();
+        if (readModelSync == null) {
+            throw new BackendResourcesException("User read model is disabled", HttpStatus.NOT_FOUND);
+        }
+        readModelSync.requestResync();
+        return ResponseEntity.accepted().build();
+    }
+
+    // Метод для вычисления слабого ETag по JSON-представлению пользователя: слабого, потому что сжатие ответа
+    // меняет его байты, а содержимое остаётся тем же
+    private String eTag(UserResponse userResponse) throws JsonProcessingException {
+        return "W/\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(userResponse)) + "\"";
     }
 
     // Метод для тестирования аутентификации
@@ -46,7 +225,11 @@ public class UserController {
     @Secured("ROLE_MODERATOR")
     @SecurityRequirement(name = "oauth2_auth_code")
     public String hello() {
-        // Возвращает имя аутентифицированного пользователя из контекста безопасности
+        return currentUserName();
+    }
+
+    // Метод, возвращающий имя аутентифицированного пользователя из контекста безопасности
+    private static String currentUserName() {
         return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 }
@@ -0,0 +1,161 @@
+package com.itm.space.backendresources.mapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Справочник ролей и групп realm: по одному общему экземпляру каждого имени и каждого набора имён.
+// Ответы Keycloak каждый раз содержат новые строки, а наборы ролей и групп у пользователей обычно совпадают,
+// поэтому маппер заменяет их общими экземплярами и закэшированные пользователи не хранят собственные копии.
+// Справочник загружается и обновляется RealmCatalogLoader; имена, появившиеся в realm после загрузки, добавляются
+// до ограничения max-names, наборы имён - до ограничения max-name-lists, сверх них возвращаются как есть
+@Component
+public class RealmCatalog {
+    private final int maxNames;
+    private final int maxNameLists;
+    private volatile Names roles;
+    private volatile Names groups;
+
+    public RealmCatalog(@Value("${keycloak.catalog.max-names:10000}") int maxNames,
+                        @Value("${keycloak.catalog.max-name-lists:10000}") int maxNameLists) {
+        this.maxNames = maxNames;
+        this.maxNameLists = maxNameLists;
+        this.roles = new Names(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        this.groups = new Names(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    // Метод для получения общего экземпляра списка имён ролей пользователя
+    public <T> List<String> roleNames(List<T> items, Function<T, String> nameOf) {
+        return roles.share(new NameView<>(items, nameOf));
+    }
+
+    // Метод для получения общего экземпляра списка имён групп пользователя
+    public <T> List<String> groupNames(List<T> items, Function<T, String> nameOf) {
+        return groups.share(new NameView<>(items, nameOf));
+    }
+
+    // Метод для замены справочника загруженным из Keycloak. Уже выданные экземпляры имён и наборов сохраняются,
+    // наборы с удалёнными из realm именами удаляются из справочника
+    public void update(Collection<String> roleNames, Collection<String> groupNames) {
+        roles = roles.replace(roleNames);
+        groups = groups.replace(groupNames);
+    }
+
+    public int roleCount() {
+        return roles.names.size();
+    }
+
+    public int groupCount() {
+        return groups.names.size();
+    }
+
+    public int nameListCount() {
+        return roles.lists.size() + groups.lists.size();
+    }
+
+    private final class Names {
+        private final Map<String, String> names;
+        private final Map<List<String>, List<String>> lists;
+
+        Names(Map<String, String> names, Map<List<String>, List<String>> lists) {
+            this.names = names;
+            this.lists = lists;
+        }
+
+        List<String> share(List<String> values) {
+            if (values.isEmpty()) {
+                return List.of();
+            }
+            // Поиск по представлению без копирования, новый список создаётся только для ещё не встречавшегося набора
+            List<String> shared = lists.get(values);
+            if (shared != null) {
+                return shared;
+            }
+            List<String> canonical = values.stream().map(this::canonical).toList();
+            if (lists.size() >= maxNameLists) {
+                return canonical;
+            }
+            shared = lists.putIfAbsent(canonical, canonical);
+            return shared != null ? shared : canonical;
+        }
+
+        String canonical(String name) {
+            if (name == null) {
+                return null;
+            }
+            String shared = names.get(name);
+            if (shared != null || names.size() >= maxNames) {
+                return shared != null ? shared : name;
+            }
+            shared = names.putIfAbsent(name, name);
+            return shared != null ? shared : name;
+        }
+
+        Names replace(Collection<String> catalog) {
+            Map<String, String> replacedNames = new ConcurrentHashMap<>();
+            catalog.stream()
+                    .filter(Objects::nonNull)
+                    .limit(maxNames)
+                    .forEach(name -> replacedNames.put(name, names.getOrDefault(name, name)));
+            Map<List<String>, List<String>> replacedLists = new ConcurrentHashMap<>();
+            lists.forEach((key, list) -> {
+                if (list.stream().allMatch(name -> name != null && replacedNames.containsKey(name))) {
+                    replacedLists.put(key, list);
+                }
+            });
+            return new Names(replacedNames, replacedLists);
+        }
+    }
+
+    // Имена элементов списка без копирования: равно списку тех же имён и имеет тот же hashCode
+    private static final class NameView<T> extends AbstractList<String> implements RandomAccess {
+        private final List<T> items;
+        private final Function<T, String> nameOf;
+
+        NameView(List<T> items, Function<T, String> nameOf) {
+            this.items = items;
+            this.nameOf = nameOf;
+        }
+
+        @Override
+        public String get(int index) {
+            return nameOf.apply(items.get(index));
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        // hashCode и equals без итераторов: представление используется только как ключ поиска
+        @Override
+        public int hashCode() {
+            int hashCode = 1;
+            for (int i = 0; i < items.size(); i++) {
+                hashCode = 31 * hashCode + Objects.hashCode(get(i));
+            }
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof List<?> other) || other.size() != items.size()) {
+                return false;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (!Objects.equals(get(i), other.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -8,27 +8,37 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 import org.mapstruct.Named;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Collections;
 import java.util.List;
 
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING, imports = Collections.class)
-public interface UserMapper {
+public abstract class UserMapper {
+    // Справочник общих экземпляров имён ролей и групп; без него (например, в бенчмарке) имена не заменяются
+    private RealmCatalog realmCatalog;
+
+    @Autowired
+    public void setRealmCatalog(RealmCatalog realmCatalog) {
+        this.realmCatalog = realmCatalog;
+    }
 
     @Mapping(target = "roles", source = "roleList", qualifiedByName = "mapRoleRepresentationToString")
     @Mapping(target = "groups", source = "groupList", qualifiedByName = "mapGroupRepresentationToString")
-    UserResponse userRepresentationToUserResponse(UserRepresentation userRepresentation,
-                                                  List<RoleRepresentation> roleList,
-                                                  List<GroupRepresentation> groupList);
+    public abstract UserResponse userRepresentationToUserResponse(UserRepresentation userRepresentation,
+                                                                  List<RoleRepresentation> roleList,
+                                                                  List<GroupRepresentation> groupList);
 
     @Named("mapRoleRepresentationToString")
-    default List<String> mapRoleRepresentationToString(List<RoleRepresentation> roleList) {
-        return roleList.stream().map(RoleRepresentation::getName).toList();
+    protected List<String> mapRoleRepresentationToString(List<RoleRepresentation> roleList) {
+        return realmCatalog != null ? realmCatalog.roleNames(roleList, RoleRepresentation::getName)
+                : roleList.stream().map(RoleRepresentation::getName).toList();
     }
 
     @Named("mapGroupRepresentationToString")
-    default List<String> mapGroupRepresentationToString(List<GroupRepresentation> groupList) {
-        return groupList.stream().map(GroupRepresentation::getName).toList();
+    protected List<String> mapGroupRepresentationToString(List<GroupRepresentation> groupList) {
+        return realmCatalog != null ? realmCatalog.groupNames(groupList, GroupRepresentation::getName)
+                : groupList.stream().map(GroupRepresentation::getName).toList();
     }
 
 }
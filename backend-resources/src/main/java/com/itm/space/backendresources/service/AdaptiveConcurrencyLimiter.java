@@ -0,0 +1,122 @@
+package com.itm.space.backendresources.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ограничивает количество одновременных вызовов; лимит подстраивается по времени ответа (градиентный алгоритм):
+// пока задержка близка к долгосрочной средней, лимит растёт, при росте задержки или ошибках - уменьшается
+public class AdaptiveConcurrencyLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;// Во сколько раз задержка может превышать среднюю без уменьшения лимита
+    private final double smoothing;// Доля нового значения при обновлении лимита
+    private final double longRttDecay;// Вес нового замера в долгосрочной средней задержке
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+    private double longRttNanos;// Изменяется только под блокировкой this
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                                      double smoothing, int longRttWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.longRttDecay = 2.0 / (longRttWindow + 1);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // Метод для занятия места: возвращает null, если лимит одновременных вызовов исчерпан
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1, System.nanoTime());
+            }
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    // Метод для пересчёта лимита по задержке успешного вызова
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) * longRttDecay;
+        }
+        // Если задержка надолго выросла, а потом вернулась, средняя догоняет её быстрее
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        // Лимит не растёт, пока он почти не используется: нагрузка ограничена не лимитом, а приложением
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rttNanos));
+        double queueSize = Math.sqrt(limit);
+        double newLimit = limit * gradient + queueSize;
+        updateLimit(limit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    // Метод для уменьшения лимита после таймаута или ошибки сервера
+    private synchronized void onDrop() {
+        updateLimit(limit * 0.9);
+    }
+
+    private void updateLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    // Занятое место; должно быть освобождено ровно одним из методов onSuccess, onDropped или release
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        // Вызов завершился ответом сервиса: задержка учитывается при пересчёте лимита
+        public void onSuccess() {
+            if (release()) {
+                onSample(Math.max(System.nanoTime() - startNanos, TimeUnit.MICROSECONDS.toNanos(1)), inFlightAtStart);
+            }
+        }
+
+        // Вызов завершился таймаутом или перегрузкой сервиса: лимит уменьшается
+        public void onDropped() {
+            if (release()) {
+                onDrop();
+            }
+        }
+
+        // Освобождение места без влияния на лимит
+        public boolean release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
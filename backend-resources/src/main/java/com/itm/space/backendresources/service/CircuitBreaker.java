@@ -0,0 +1,179 @@
+package com.itm.space.backendresources.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Автоматический выключатель: по последним вызовам считает долю ошибок и медленных вызовов.
+// При превышении порога вызовы сразу отклоняются (OPEN); по истечении паузы пропускается несколько
+// пробных вызовов (HALF_OPEN), и если они успешны, выключатель снова замыкается (CLOSED)
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureRateThreshold;// Доля ошибок в процентах, при которой выключатель размыкается
+    private final int slowCallRateThreshold;// Доля медленных вызовов в процентах, при которой выключатель размыкается
+    private final long slowCallDurationNanos;// Вызов дольше этого времени считается медленным
+    private final int minimumCalls;// Минимальное количество вызовов в окне для расчёта долей
+    private final long waitInOpenNanos;// Время в состоянии OPEN до пробных вызовов
+    private final int halfOpenCalls;// Количество пробных вызовов в состоянии HALF_OPEN
+
+    // Скользящее окно результатов последних вызовов; изменяется только под блокировкой this
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int windowPosition;
+    private int windowCount;
+    private int failedCount;
+    private int slowCount;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtNanos;
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private int halfOpenSucceeded;
+    private final LongAdder notPermitted = new LongAdder();
+    private volatile Consumer<State> stateListener = state -> {
+    };
+
+    public CircuitBreaker(int failureRateThreshold, int slowCallRateThreshold, Duration slowCallDuration,
+                          int slidingWindowSize, int minimumCalls, Duration waitInOpen, int halfOpenCalls) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = slowCallDuration.toNanos();
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.waitInOpenNanos = waitInOpen.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.failedCalls = new boolean[slidingWindowSize];
+        this.slowCalls = new boolean[slidingWindowSize];
+    }
+
+    // Метод для подписки на смену состояния; слушатель вызывается после снятия блокировки в потоке, вызвавшем
+    // смену состояния, поэтому долгие действия он должен передавать в другой поток
+    public void onStateChange(Consumer<State> listener) {
+        this.stateListener = listener;
+    }
+
+    // Метод для проверки, можно ли выполнить вызов; при true результат вызова нужно передать в onSuccess,
+    // onFailure или onIgnored
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.OPEN && System.nanoTime() - openedAtNanos >= waitInOpenNanos) {
+            State transition = null;
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    transition = transitionTo(State.HALF_OPEN);
+                }
+            }
+            notifyListener(transition);
+            current = state;
+        }
+        boolean permitted = switch (current) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> halfOpenPermits.getAndUpdate(permits -> Math.max(permits - 1, 0)) > 0;
+        };
+        if (!permitted) {
+            notPermitted.increment();
+        }
+        return permitted;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public long notPermittedCount() {
+        return notPermitted.sum();
+    }
+
+    // Вызов завершился ответом сервиса; медленный ответ учитывается как медленный вызов
+    public void onSuccess(long durationNanos) {
+        State transition;
+        synchronized (this) {
+            transition = record(false, durationNanos > slowCallDurationNanos);
+        }
+        notifyListener(transition);
+    }
+
+    // Вызов завершился ошибкой, которая говорит о недоступности сервиса
+    public void onFailure(long durationNanos) {
+        State transition;
+        synchronized (this) {
+            transition = record(true, durationNanos > slowCallDurationNanos);
+        }
+        notifyListener(transition);
+    }
+
+    // Вызов не дошёл до сервиса или результат не характеризует его состояние: пробный вызов возвращается
+    public void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    // Метод для учёта результата вызова; возвращает новое состояние, если оно сменилось, иначе null
+    private State record(boolean failed, boolean slow) {
+        switch (state) {
+            case HALF_OPEN -> {
+                // Любая ошибка или медленный пробный вызов снова размыкает выключатель
+                if (failed || slow) {
+                    return transitionTo(State.OPEN);
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    return transitionTo(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                addToWindow(failed, slow);
+                if (windowCount >= minimumCalls
+                        && (failedCount * 100 >= failureRateThreshold * windowCount
+                        || slowCount * 100 >= slowCallRateThreshold * windowCount)) {
+                    return transitionTo(State.OPEN);
+                }
+            }
+            case OPEN -> {
+                // Результат вызова, начатого до размыкания, не учитывается
+            }
+        }
+        return null;
+    }
+
+    private void addToWindow(boolean failed, boolean slow) {
+        if (windowCount == failedCalls.length) {
+            failedCount -= failedCalls[windowPosition] ? 1 : 0;
+            slowCount -= slowCalls[windowPosition] ? 1 : 0;
+        } else {
+            windowCount++;
+        }
+        failedCalls[windowPosition] = failed;
+        slowCalls[windowPosition] = slow;
+        failedCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        windowPosition = (windowPosition + 1) % failedCalls.length;
+    }
+
+    // Метод для смены состояния под блокировкой this; слушатель уведомляется вызывающим кодом после её снятия
+    private State transitionTo(State newState) {
+        state = newState;
+        switch (newState) {
+            case OPEN -> openedAtNanos = System.nanoTime();
+            case HALF_OPEN -> {
+                halfOpenSucceeded = 0;
+                halfOpenPermits.set(halfOpenCalls);
+            }
+            case CLOSED -> {
+                windowPosition = 0;
+                windowCount = 0;
+                failedCount = 0;
+                slowCount = 0;
+            }
+        }
+        return newState;
+    }
+
+    private void notifyListener(State newState) {
+        if (newState != null) {
+            stateListener.accept(newState);
+        }
+    }
+}
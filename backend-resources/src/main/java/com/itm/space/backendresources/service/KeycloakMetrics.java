@@ -0,0 +1,109 @@
+package com.itm.space.backendresources.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+// Замеры запросов к Keycloak для блокирующего и неблокирующего сервисов пользователей.
+// Метрика keycloak.requests разделена по операции, исходу (как в http.server.requests) и HTTP-статусу
+@Component
+@RequiredArgsConstructor
+public class KeycloakMetrics {
+    private static final String IO_ERROR = "IO_ERROR";// Статус для ошибок без ответа Keycloak (таймаут, соединение)
+
+    private final MeterRegistry meterRegistry;
+
+    // Метод для замера запроса на чтение: успешный ответ Keycloak на чтение - всегда 200
+    public <T> T record(String operation, Supplier<T> request) {
+        return record(operation, request, result -> HttpStatus.OK.value());
+    }
+
+    // Метод для замера запроса с получением статуса успешного ответа из результата
+    public <T> T record(String operation, Supplier<T> request, ToIntFunction<T> successStatus) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = request.get();
+            stop(sample, operation, String.valueOf(successStatus.applyAsInt(result)));
+            return result;
+        } catch (RuntimeException ex) {
+            stop(sample, operation, status(ex));
+            throw ex;
+        }
+    }
+
+    // Метод для замера неблокирующего запроса на чтение
+    public <T> Mono<T> record(String operation, Mono<T> request) {
+        return record(operation, request, result -> HttpStatus.OK.value());
+    }
+
+    // Метод для замера неблокирующего запроса; отменённый запрос учитывается со статусом CANCELLED
+    public <T> Mono<T> record(String operation, Mono<T> request, ToIntFunction<T> successStatus) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            AtomicReference<String> status = new AtomicReference<>();
+            return request
+                    .doOnNext(result -> status.set(String.valueOf(successStatus.applyAsInt(result))))
+                    .doOnError(ex -> status.set(status(ex)))
+                    .doFinally(signal -> stop(sample, operation, signal == SignalType.CANCEL ? "CANCELLED"
+                            : status.get() != null ? status.get() : String.valueOf(HttpStatus.OK.value())));
+        });
+    }
+
+    // Метод для замера преобразования ответов Keycloak в UserResponse
+    public <T> T recordMapping(Supplier<T> mapping) {
+        return Timer.builder("users.mapping")
+                .description("Time spent mapping Keycloak representations to a user response")
+                .register(meterRegistry)
+                .record(mapping);
+    }
+
+    private void stop(Timer.Sample sample, String operation, String status) {
+        sample.stop(Timer.builder("keycloak.requests")
+                .description("Latency of Keycloak admin API requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome(status))
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static String status(Throwable ex) {
+        if (ex instanceof WebApplicationException webApplicationException
+                && webApplicationException.getResponse() != null) {
+            return String.valueOf(webApplicationException.getResponse().getStatus());
+        }
+        if (ex instanceof WebClientResponseException webClientResponseException) {
+            return String.valueOf(webClientResponseException.getStatusCode().value());
+        }
+        return IO_ERROR;
+    }
+
+    private static String outcome(String status) {
+        HttpStatus.Series series;
+        try {
+            series = HttpStatus.Series.resolve(Integer.parseInt(status));
+        } catch (NumberFormatException ex) {
+            return "UNKNOWN";
+        }
+        if (series == null) {
+            return "UNKNOWN";
+        }
+        return switch (series) {
+            case SUCCESSFUL -> "SUCCESS";
+            case CLIENT_ERROR -> "CLIENT_ERROR";
+            case SERVER_ERROR -> "SERVER_ERROR";
+            case REDIRECTION -> "REDIRECTION";
+            case INFORMATIONAL -> "INFORMATIONAL";
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Чтение пользователей из Keycloak для синхронизации локальной модели чтения и построения индекса поиска
+public interface KeycloakUserSource {
+
+    // Постраничный обход всех пользователей realm вместе с ролями и группами
+    void scanUsers(Consumer<List<UserSnapshot>> pageConsumer);
+
+    // Постраничный обход всех пользователей realm без ролей и групп: один запрос к Keycloak на страницу
+    void scanUserNames(Consumer<List<UserSearchResponse>> pageConsumer);
+
+    // Пользователь с ролями и группами или null, если пользователь удалён
+    UserSnapshot fetchUser(UUID id);
+
+}
@@ -0,0 +1,23 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Неблокирующий вариант UserService: запросы к Keycloak не занимают поток на время ожидания ответа
+public interface ReactiveUserService {
+
+    Mono<Void> createUser(UserRequest userRequest);
+
+    Mono<List<UserBatchItemResponse>> createUsers(List<UserRequest> userRequests);
+
+    Mono<UserResponse> getUserById(UUID id);
+
+    Mono<Map<UUID, UserResponse>> getUsersByIds(List<UUID> ids);
+
+}
@@ -0,0 +1,233 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+import com.itm.space.backendresources.configuration.CacheConfiguration;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.itm.space.backendresources.service.UserServiceImpl.preparePasswordRepresentation;
+import static com.itm.space.backendresources.service.UserServiceImpl.prepareUserRepresentation;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+    private static final ParameterizedTypeReference<List<GroupRepresentation>> GROUP_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final WebClient keycloakWebClient;// Неблокирующий клиент Admin REST API Keycloak
+    private final UserMapper userMapper;// Маппер для преобразования объектов
+    private final KeycloakMetrics keycloakMetrics;// Замеры запросов к Keycloak, общие с UserServiceImpl
+    private final CacheManager cacheManager;// Менеджер кэшей, общий с блокирующим UserServiceImpl
+    private final UserReadModel userReadModel;// Локальная модель чтения, общая с блокирующим UserServiceImpl
+    private final UserSearchIndex userSearchIndex;// Индекс поиска пользователей, общий с блокирующим UserServiceImpl
+    // Выполняющиеся запросы пользователей: одновременные запросы одного ID подписываются на один запрос к Keycloak
+    private final ConcurrentMap<UUID, Mono<UserResponse>> userLoads = new ConcurrentHashMap<>();
+
+    @Value("${users.batch.max-size:1000}")
+    private int batchMaxSize;
+    @Value("${users.batch.concurrency:8}")
+    private int batchConcurrency;
+    @Value("${users.lookup.max-ids:100}")
+    private int lookupMaxIds;
+    @Value("${users.lookup.concurrency:8}")
+    private int lookupConcurrency;
+
+    @Override
+    public Mono<Void> createUser(UserRequest userRequest) {
+        return submitUser(userRequest).then();
+    }
+
+    // Метод для пакетного создания пользователей: не больше batchConcurrency запросов к Keycloak одновременно,
+    // результаты возвращаются в порядке пользователей в запросе
+    @Override
+    public Mono<List<UserBatchItemResponse>> createUsers(List<UserRequest> userRequests) {
+        if (userRequests.size() > batchMaxSize) {
+            return Mono.error(new BackendResourcesException("Batch size should not exceed " + batchMaxSize,
+                    HttpStatus.BAD_REQUEST));
+        }
+        return Flux.range(0, userRequests.size())
+                .flatMapSequential(index -> createBatchItem(index, userRequests.get(index)), batchConcurrency)
+                .collectList();
+    }
+
+    // Метод для создания одного пользователя из пакета: ошибка не прерывает обработку остальных
+    private Mono<UserBatchItemResponse> createBatchItem(int index, UserRequest userRequest) {
+        return submitUser(userRequest)
+                .map(userId -> new UserBatchItemResponse(index, userId, HttpStatus.CREATED.value(), null))
+                .onErrorResume(BackendResourcesException.class, ex -> {
+                    HttpStatus httpStatus = ex.getHttpStatus() != null
+                            ? ex.getHttpStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return Mono.just(new UserBatchItemResponse(index, null, httpStatus.value(), ex.getMessage()));
+                })
+                .onErrorResume(ex -> {
+                    log.error("Exception on \"createUsers\": ", ex);
+                    return Mono.just(new UserBatchItemResponse(index, null,
+                            HttpStatus.INTERNAL_SERVER_ERROR.value(), ex.getMessage()));
+                });
+    }
+
+    // Метод для создания пользователя в Keycloak, возвращает ID созданного пользователя
+    private Mono<UUID> submitUser(UserRequest userRequest) {
+        UserRepresentation user = prepareUserRepresentation(userRequest,
+                preparePasswordRepresentation(userRequest.getPassword()));
+        return keycloakMetrics.record("create", keycloakWebClient.post()
+                        .uri("/users")
+                        .bodyValue(user)
+                        .retrieve()
+                        .toBodilessEntity(), response -> response.getStatusCode().value())
+                .map(ReactiveUserServiceImpl::createdId)
+                .doOnNext(id -> {
+                    log.info("Created UserId: {}", id);
+                    evictUser(id);// Удаляем возможную запись о пользователе из кэша
+                    userSearchIndex.put(new UserSearchResponse(id, userRequest.getUsername(),
+                            userRequest.getFirstName(), userRequest.getLastName(), userRequest.getEmail()));
+                })
+                .onErrorMap(WebClientResponseException.class, ex -> {
+                    log.error("Exception on \"createUser\": ", ex);
+                    return new BackendResourcesException(ex.getMessage(),
+                            HttpStatus.resolve(ex.getStatusCode().value()));
+                });
+    }
+
+    // Метод для извлечения ID созданного пользователя из заголовка Location, как CreatedResponseUtil
+    private static UUID createdId(ResponseEntity<Void> response) {
+        URI location = response.getHeaders().getLocation();
+        if (response.getStatusCode().value() != HttpStatus.CREATED.value() || location == null) {
+            throw new BackendResourcesException("Create method returned status " + response.getStatusCode()
+                    + "; expected status: Created (201)", HttpStatus.resolve(response.getStatusCode().value()));
+        }
+        String path = location.getPath();
+        return UUID.fromString(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    // Метод для получения пользователя по ID: сначала из локальной модели чтения или кэша, затем из Keycloak
+    @Override
+    public Mono<UserResponse> getUserById(UUID id) {
+        Cache usersCache = usersCache();
+        return lookupCached(usersCache, id)
+                .switchIfEmpty(Mono.defer(() -> loadUser(id).doOnNext(user -> usersCache.put(id, user))))
+                .onErrorMap(ex -> !(ex instanceof BackendResourcesException), ex -> {
+                    log.error("Exception on \"getUserById\": ", ex);
+                    return new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+                });
+    }
+
+    // Метод для получения нескольких пользователей по ID: отсутствующие в Keycloak пользователи возвращаются как null
+    @Override
+    public Mono<Map<UUID, UserResponse>> getUsersByIds(List<UUID> ids) {
+        // Убираем повторяющиеся ID, сохраняя порядок
+        List<UUID> uniqueIds = List.copyOf(new LinkedHashSet<>(ids));
+        if (uniqueIds.size() > lookupMaxIds) {
+            return Mono.error(new BackendResourcesException("Lookup size should not exceed " + lookupMaxIds,
+                    HttpStatus.BAD_REQUEST));
+        }
+        Cache usersCache = usersCache();
+        return Flux.fromIterable(uniqueIds)
+                .flatMapSequential(id -> lookupUser(usersCache, id), lookupConcurrency)
+                .collectList()
+                .map(users -> {
+                    Map<UUID, UserResponse> result = new LinkedHashMap<>();
+                    for (int i = 0; i < uniqueIds.size(); i++) {
+                        result.put(uniqueIds.get(i), users.get(i).orElse(null));
+                    }
+                    return result;
+                })
+                .onErrorMap(ex -> !(ex instanceof BackendResourcesException), ex -> {
+                    log.error("Exception on \"getUsersByIds\": ", ex);
+                    return new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+                });
+    }
+
+    // Метод для получения пользователя из кэша или из Keycloak, пустое значение - пользователь не найден
+    private Mono<Optional<UserResponse>> lookupUser(Cache usersCache, UUID id) {
+        return lookupCached(usersCache, id)
+                .switchIfEmpty(Mono.defer(() -> loadUser(id).doOnNext(user -> usersCache.put(id, user))))
+                .map(Optional::of)
+                .onErrorResume(WebClientResponseException.NotFound.class, ex -> Mono.just(Optional.empty()));
+    }
+
+    // Метод для получения пользователя из локальной модели чтения, если она актуальна, или из кэша
+    private Mono<UserResponse> lookupCached(Cache usersCache, UUID id) {
+        UserResponse fromReadModel = userReadModel.find(id);
+        return Mono.justOrEmpty(fromReadModel != null ? fromReadModel : usersCache.get(id, UserResponse.class));
+    }
+
+    // Метод для получения пользователя, его ролей и групп из Keycloak тремя одновременными запросами.
+    // Ошибка любого запроса отменяет остальные; одновременные вызовы для одного ID разделяют один результат
+    private Mono<UserResponse> loadUser(UUID id) {
+        return Mono.defer(() -> userLoads.computeIfAbsent(id, key -> Mono.zip(
+                                keycloakMetrics.record("user", getUser(key)),
+                                keycloakMetrics.record("roles", getRealmRoles(key)),
+                                keycloakMetrics.record("groups", getGroups(key)))
+                        .map(tuple -> keycloakMetrics.recordMapping(() -> userMapper.userRepresentationToUserResponse(
+                                tuple.getT1(), tuple.getT2(), tuple.getT3())))
+                        .doFinally(signal -> userLoads.remove(key))
+                        .cache()));
+    }
+
+    private Mono<UserRepresentation> getUser(UUID id) {
+        return keycloakWebClient.get()
+                .uri("/users/{id}", id)
+                .retrieve()
+                .bodyToMono(UserRepresentation.class);
+    }
+
+    private Mono<List<RoleRepresentation>> getRealmRoles(UUID id) {
+        return keycloakWebClient.get()
+                .uri("/users/{id}/role-mappings", id)
+                .retrieve()
+                .bodyToMono(MappingsRepresentation.class)
+                .map(mappings -> mappings.getRealmMappings() != null ? mappings.getRealmMappings() : List.of());
+    }
+
+    private Mono<List<GroupRepresentation>> getGroups(UUID id) {
+        return keycloakWebClient.get()
+                .uri("/users/{id}/groups", id)
+                .retrieve()
+                .bodyToMono(GROUP_LIST);
+    }
+
+    // Метод для получения кэша пользователей
+    private Cache usersCache() {
+        Cache usersCache = cacheManager.getCache(CacheConfiguration.USERS_CACHE);
+        return usersCache != null ? usersCache : new NoOpCache(CacheConfiguration.USERS_CACHE);
+    }
+
+    // Метод для удаления пользователя из кэша
+    private void evictUser(UUID id) {
+        usersCache().evict(id);
+    }
+}
@@ -0,0 +1,108 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.mapper.RealmCatalog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Загрузка справочника ролей и групп realm при старте и периодически после него, чтобы в справочник попадали
+// созданные и удалённые роли и группы
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RealmCatalogLoader implements DisposableBean {
+    private final Keycloak keycloakClient;
+    private final KeycloakMetrics keycloakMetrics;
+    private final RealmCatalog realmCatalog;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+    @Value("${keycloak.realm}")
+    private String realm;
+    @Value("${keycloak.catalog.refresh-interval:10m}")
+    private Duration refreshInterval;
+    // Пауза перед повторной попыткой после ошибки загрузки
+    @Value("${keycloak.catalog.retry-interval:30s}")
+    private Duration retryInterval;
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("keycloak.catalog.size", realmCatalog, RealmCatalog::roleCount)
+                .description("Number of role names, group names and shared name lists in the realm catalog")
+                .tag("type", "roles")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.catalog.size", realmCatalog, RealmCatalog::groupCount)
+                .description("Number of role names, group names and shared name lists in the realm catalog")
+                .tag("type", "groups")
+                .register(meterRegistry);
+        Gauge.builder("keycloak.catalog.size", realmCatalog, RealmCatalog::nameListCount)
+                .description("Number of role names, group names and shared name lists in the realm catalog")
+                .tag("type", "name-lists")
+                .register(meterRegistry);
+        scheduler.schedule(this::refreshInBackground, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    // Метод для загрузки ролей и групп realm; вложенные группы загружаются вместе с родительскими
+    public void refresh() {
+        RealmResource realmResource = keycloakClient.realm(realm);
+        List<String> roleNames = keycloakMetrics.record("realm-roles", () -> realmResource.roles().list()).stream()
+                .map(RoleRepresentation::getName)
+                .toList();
+        List<String> groupNames = new ArrayList<>();
+        addGroupNames(keycloakMetrics.record("realm-groups", () -> realmResource.groups().groups()), groupNames);
+        realmCatalog.update(roleNames, groupNames);
+        log.info("Realm catalog loaded with {} roles and {} groups", roleNames.size(), groupNames.size());
+    }
+
+    // Метод для фоновой загрузки справочника с планированием следующей загрузки
+    private void refreshInBackground() {
+        long delayMillis = refreshInterval.toMillis();
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("Realm catalog load failed: {}", ex.getMessage());
+            delayMillis = retryInterval.toMillis();
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refreshInBackground, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void addGroupNames(List<GroupRepresentation> groups, List<String> groupNames) {
+        if (groups == null) {
+            return;
+        }
+        for (GroupRepresentation group : groups) {
+            groupNames.add(group.getName());
+            addGroupNames(group.getSubGroups(), groupNames);
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("realm-catalog-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
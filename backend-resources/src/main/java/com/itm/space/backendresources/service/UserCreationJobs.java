@@ -0,0 +1,174 @@
+package com.itm.space.backendresources.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
+import com.itm.space.backendresources.api.response.UserJobResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Асинхронное создание пользователей: запросы ставятся в ограниченную очередь, обработчики забирают их пачками
+// и создают пользователей через UserService.createUsers, результат доступен по ID задачи до истечения job-ttl.
+// Если очередь заполнена, запрос сразу отклоняется с 503, чтобы не копить задачи сверх возможностей Keycloak.
+// Состояние задачи доступно только пользователю, который её создал
+@Slf4j
+@Component
+public class UserCreationJobs implements DisposableBean {
+    private final UserService userService;
+    private final BlockingQueue<Job> queue;
+    // Задачи в очереди и в работе: их число ограничено размером очереди и пачками обработчиков, поэтому они
+    // хранятся без вытеснения, чтобы клиент гарантированно получил результат принятой задачи
+    private final Map<UUID, Job> pendingJobs = new ConcurrentHashMap<>();
+    private final Cache<UUID, Job> completedJobs;// Завершённые задачи до истечения срока хранения или вытеснения
+    private final int batchSize;
+    private final Counter rejected;
+    private final ExecutorService workers;
+
+    public UserCreationJobs(UserService userService, MeterRegistry meterRegistry,
+                            @Value("${users.async.queue-capacity:1000}") int queueCapacity,
+                            @Value("${users.async.workers:2}") int workerCount,
+                            @Value("${users.async.batch-size:50}") int batchSize,
+                            @Value("${users.async.job-ttl:1h}") Duration jobTtl,
+                            @Value("${users.async.max-jobs:10000}") long maxJobs) {
+        this.userService = userService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Число хранимых завершённых задач ограничено: за job-ttl может завершиться сколько угодно задач
+        this.completedJobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobTtl)
+                .maximumSize(maxJobs)
+                .build();
+        this.batchSize = batchSize;
+        Gauge.builder("users.create.queue.size", queue, BlockingQueue::size)
+                .description("Number of asynchronous user creations waiting in the queue")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("users.create.queue.rejected")
+                .description("Number of asynchronous user creations rejected because the queue was full")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-create-");
+        threadFactory.setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    // Метод для постановки создания пользователя в очередь от имени owner, возвращает задачу в состоянии QUEUED
+    public UserJobResponse submit(UserRequest userRequest, String owner) {
+        Job job = new Job(UUID.randomUUID(), owner, userRequest);
+        pendingJobs.put(job.id, job);
+        if (!queue.offer(job)) {
+            pendingJobs.remove(job.id);
+            rejected.increment();
+            throw new BackendResourcesException("User creation queue is full, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return job.toResponse();
+    }
+
+    // Метод для получения состояния задачи. Чужая задача не отличается от несуществующей
+    public UserJobResponse get(UUID id, String owner) {
+        Job job = pendingJobs.get(id);
+        if (job == null) {
+            job = completedJobs.getIfPresent(id);
+        }
+        if (job == null || !job.owner.equals(owner)) {
+            throw new BackendResourcesException("Job " + id + " not found", HttpStatus.NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    // Цикл обработчика: ждёт первую задачу, затем забирает из очереди уже накопившиеся задачи до размера пачки
+    private void drain() {
+        List<Job> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<Job> batch) {
+        batch.forEach(job -> job.state = UserJobResponse.State.RUNNING);
+        try {
+            List<UserBatchItemResponse> results = userService.createUsers(batch.stream().map(job -> job.request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                UserBatchItemResponse result = results.get(i);
+                complete(batch.get(i), result.getId(), result.getStatus(), result.getError());
+            }
+        } catch (RuntimeException ex) {
+            log.error("Exception on asynchronous \"createUsers\": ", ex);
+            HttpStatus httpStatus = ex instanceof BackendResourcesException backendResourcesException
+                    && backendResourcesException.getHttpStatus() != null
+                    ? backendResourcesException.getHttpStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+            batch.forEach(job -> complete(job, null, httpStatus.value(), ex.getMessage()));
+        }
+    }
+
+    // Метод для завершения задачи: задача попадает в хранилище завершённых до удаления из ожидающих,
+    // чтобы запрос состояния не застал её ни в одном из них
+    private void complete(Job job, UUID userId, int status, String error) {
+        job.complete(userId, status, error);
+        completedJobs.put(job.id, job);
+        pendingJobs.remove(job.id);
+    }
+
+    private static final class Job {
+        private final UUID id;
+        private final String owner;// Имя аутентификации пользователя, создавшего задачу
+        private volatile UserRequest request;// Сбрасывается после выполнения, чтобы не хранить пароль
+        private volatile UserJobResponse.State state = UserJobResponse.State.QUEUED;
+        private volatile UUID userId;
+        private volatile Integer status;
+        private volatile String error;
+
+        Job(UUID id, String owner, UserRequest request) {
+            this.id = id;
+            this.owner = owner;
+            this.request = request;
+        }
+
+        void complete(UUID userId, int status, String error) {
+            this.userId = userId;
+            this.status = status;
+            this.error = error;
+            this.request = null;
+            this.state = userId != null ? UserJobResponse.State.SUCCEEDED : UserJobResponse.State.FAILED;
+        }
+
+        UserJobResponse toResponse() {
+            UserJobResponse.State currentState = state;// Состояние читается первым: после него поля результата заполнены
+            return new UserJobResponse(id, currentState, userId, status, error);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Локальная модель чтения пользователей с ролями и группами. Заполняется и обновляется UserReadModelSync;
+// чтения обслуживаются из модели, только пока она отстаёт от Keycloak не больше чем на max-staleness
+@Component
+public class UserReadModel {
+    private final Map<UUID, UserSnapshot> users = new ConcurrentHashMap<>();
+    // Момент, на который модель гарантированно содержит все изменения Keycloak; 0 - модель ещё не заполнена
+    private volatile long syncedAtMillis;
+
+    @Value("${users.read-model.enabled:false}")
+    private boolean enabled;
+    // Допустимое отставание модели от Keycloak, при большем отставании чтения идут в Keycloak
+    @Value("${users.read-model.max-staleness:30s}")
+    private Duration maxStaleness;
+
+    // Метод для получения пользователя из модели; null, если модель выключена, устарела или пользователя в ней нет.
+    // Пользователь, созданный после последней синхронизации, будет найден в Keycloak
+    public UserResponse find(UUID id) {
+        if (!isFresh()) {
+            return null;
+        }
+        UserSnapshot snapshot = users.get(id);
+        return snapshot != null ? snapshot.toResponse() : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isFresh() {
+        long syncedAt = syncedAtMillis;
+        return enabled && syncedAt > 0 && System.currentTimeMillis() - syncedAt <= maxStaleness.toMillis();
+    }
+
+    // Метод для получения отставания модели от Keycloak; null, если модель ещё не заполнена
+    public Duration lag() {
+        long syncedAt = syncedAtMillis;
+        return syncedAt > 0 ? Duration.ofMillis(System.currentTimeMillis() - syncedAt) : null;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    Collection<UserSnapshot> snapshots() {
+        return users.values();
+    }
+
+    void put(UserSnapshot snapshot) {
+        users.put(snapshot.id(), snapshot);
+    }
+
+    void remove(UUID id) {
+        users.remove(id);
+    }
+
+    long syncedAtMillis() {
+        return syncedAtMillis;
+    }
+
+    // Метод для отметки синхронизации: модель содержит все изменения Keycloak до указанного момента
+    void markSynced(long syncedAtMillis) {
+        this.syncedAtMillis = syncedAtMillis;
+    }
+}
@@ -0,0 +1,323 @@
+package com.itm.space.backendresources.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Синхронизация локальной модели чтения пользователей с Keycloak: модель заполняется полным постраничным обходом,
+// затем поддерживается опросом admin-событий Keycloak начиная с сохранённого курсора (времени последнего события).
+// По каждому событию пользователь перечитывается из Keycloak целиком, поэтому повторное применение события
+// безопасно. Модель и курсор периодически сохраняются в файл, после перезапуска синхронизация продолжается
+// с курсора без полного обхода. Требует включённого сохранения admin-событий в realm
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "users.read-model.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class UserReadModelSync implements DisposableBean {
+    // Типы ресурсов admin-событий, изменяющих пользователей, их роли и группы
+    private static final List<String> RESOURCE_TYPES =
+            List.of("USER", "REALM_ROLE_MAPPING", "GROUP_MEMBERSHIP", "REALM_ROLE", "GROUP");
+    private static final Pattern USER_PATH = Pattern.compile("users/([0-9a-fA-F-]{36})(/.*)?");
+
+    private final Keycloak keycloakClient;
+    private final KeycloakUserSource userSource;
+    private final UserReadModel readModel;
+    private final KeycloakMetrics keycloakMetrics;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+    private final AtomicBoolean resyncRequested = new AtomicBoolean(true);
+    // Ключи уже применённых событий из окна перекрытия, чтобы не перечитывать пользователей повторно
+    private final Map<String, Long> appliedEvents = new HashMap<>();
+
+    // Время последнего учтённого admin-события по часам Keycloak; изменяется только в потоке синхронизации
+    private long cursor;
+    private long lastSnapshotAt;
+    // Модель заполнена полным обходом или из сохранённого файла
+    private boolean populated;
+    private Counter resyncs;
+    private Counter syncErrors;
+
+    @Value("${keycloak.realm}")
+    private String realm;
+    // Интервал опроса admin-событий
+    @Value("${users.read-model.poll-interval:5s}")
+    private Duration pollInterval;
+    // Количество событий, запрашиваемых одним запросом
+    @Value("${users.read-model.events-page-size:100}")
+    private int eventsPageSize;
+    // События запрашиваются с перекрытием: событие, записанное позже соседнего с более ранним временем, не теряется
+    @Value("${users.read-model.event-overlap:5s}")
+    private Duration eventOverlap;
+    // Файл для сохранения модели и курсора; пустое значение - модель не сохраняется
+    @Value("${users.read-model.snapshot-file:}")
+    private String snapshotFile;
+    @Value("${users.read-model.snapshot-interval:5m}")
+    private Duration snapshotInterval;
+    // Сохранённая модель старше этого срока не загружается: события за это время могли быть удалены из Keycloak
+    @Value("${users.read-model.max-snapshot-age:12h}")
+    private Duration maxSnapshotAge;
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("users.read-model.lag", readModel, UserReadModelSync::lagSeconds)
+                .description("Seconds since the moment up to which the user read model reflects Keycloak")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("users.read-model.size", readModel, UserReadModel::size)
+                .description("Number of users in the read model")
+                .register(meterRegistry);
+        resyncs = Counter.builder("users.read-model.resyncs")
+                .description("Number of full scans of Keycloak users")
+                .register(meterRegistry);
+        syncErrors = Counter.builder("users.read-model.sync.errors")
+                .description("Number of failed read model synchronizations")
+                .register(meterRegistry);
+        scheduler.execute(this::loadSnapshot);
+        scheduler.scheduleWithFixedDelay(this::sync, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Метод для запроса полной пересинхронизации, например после изменения realm в обход admin-событий.
+    // Обход выполняется в фоне, до его завершения чтения обслуживаются текущей моделью
+    public void requestResync() {
+        resyncRequested.set(true);
+        scheduler.execute(this::sync);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdownNow();
+        if (scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            saveSnapshot();
+        }
+    }
+
+    private void sync() {
+        try {
+            if (resyncRequested.getAndSet(false)) {
+                fullScan();
+            }
+            pollEvents();
+            if (System.currentTimeMillis() - lastSnapshotAt >= snapshotInterval.toMillis()) {
+                saveSnapshot();
+            }
+        } catch (RuntimeException ex) {
+            syncErrors.increment();
+            log.warn("User read model sync failed: {}", ex.getMessage());
+        }
+    }
+
+    // Метод для полного обхода пользователей. События, произошедшие во время обхода, применяются следующим опросом
+    private void fullScan() {
+        try {
+            long startedAt = System.currentTimeMillis();
+            long scanCursor = latestEventTime();
+            Set<UUID> seen = new HashSet<>();
+            userSource.scanUsers(users -> users.forEach(user -> {
+                readModel.put(user);
+                seen.add(user.id());
+            }));
+            readModel.snapshots().removeIf(user -> !seen.contains(user.id()));
+            cursor = scanCursor;
+            appliedEvents.clear();
+            populated = true;
+            readModel.markSynced(startedAt);
+            resyncs.increment();
+            log.info("User read model loaded {} users in {} ms", seen.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException ex) {
+            resyncRequested.set(true);// Повторим обход при следующем опросе
+            throw ex;
+        }
+    }
+
+    // Метод для применения новых admin-событий: затронутые пользователи перечитываются из Keycloak,
+    // удалённые - удаляются из модели. Изменение или удаление роли или группы затрагивает многих
+    // пользователей, поэтому приводит к полной пересинхронизации
+    private void pollEvents() {
+        long startedAt = System.currentTimeMillis();
+        List<AdminEventRepresentation> events = fetchEvents(cursor - eventOverlap.toMillis());
+        Set<UUID> changedUsers = new LinkedHashSet<>();
+        boolean resync = false;
+        for (AdminEventRepresentation event : events) {
+            if (appliedEvents.containsKey(eventKey(event))) {
+                continue;
+            }
+            String resourceType = String.valueOf(event.getResourceType());
+            meterRegistry.counter("users.read-model.events", "type", resourceType).increment();
+            if ("REALM_ROLE".equals(resourceType) || "GROUP".equals(resourceType)) {
+                resync |= !"CREATE".equals(event.getOperationType());
+                continue;
+            }
+            Matcher matcher = USER_PATH.matcher(String.valueOf(event.getResourcePath()));
+            if (matcher.matches()) {
+                changedUsers.add(UUID.fromString(matcher.group(1)));
+            }
+        }
+        for (UUID id : changedUsers) {
+            UserSnapshot user = userSource.fetchUser(id);
+            if (user != null) {
+                readModel.put(user);
+            } else {
+                readModel.remove(id);
+            }
+        }
+        // События считаются применёнными только после обновления всех затронутых пользователей
+        for (AdminEventRepresentation event : events) {
+            cursor = Math.max(cursor, event.getTime());
+            appliedEvents.put(eventKey(event), event.getTime());
+        }
+        long overlapStart = cursor - eventOverlap.toMillis();
+        appliedEvents.values().removeIf(time -> time < overlapStart);
+        if (resync) {
+            log.info("Role or group changed in Keycloak, resynchronizing user read model");
+            requestResync();
+            return;
+        }
+        if (populated) {
+            readModel.markSynced(startedAt);
+        }
+    }
+
+    // Метод для получения событий со временем не раньше from. Keycloak возвращает события от новых к старым
+    // и фильтрует их только по дню, поэтому страницы запрашиваются до первого события раньше from
+    private List<AdminEventRepresentation> fetchEvents(long from) {
+        // День берётся с запасом, так как Keycloak сравнивает дату в часовом поясе сервера
+        String dateFrom = from > 0
+                ? LocalDate.ofInstant(Instant.ofEpochMilli(from), ZoneOffset.UTC).minusDays(1).toString() : null;
+        List<AdminEventRepresentation> events = new ArrayList<>();
+        for (int first = 0; ; first += eventsPageSize) {
+            List<AdminEventRepresentation> page = fetchEventsPage(dateFrom, first, eventsPageSize);
+            for (AdminEventRepresentation event : page) {
+                if (event.getTime() < from) {
+                    return events;
+                }
+                events.add(event);
+            }
+            if (page.size() < eventsPageSize) {
+                return events;
+            }
+        }
+    }
+
+    // Метод для получения времени последнего события, от которого продолжится опрос после полного обхода
+    private long latestEventTime() {
+        List<AdminEventRepresentation> latest = fetchEventsPage(null, 0, 1);
+        return latest.isEmpty() ? 0 : latest.get(0).getTime();
+    }
+
+    private List<AdminEventRepresentation> fetchEventsPage(String dateFrom, int first, int max) {
+        return keycloakMetrics.record("events", () -> keycloakClient.realm(realm).getAdminEvents(null, null, null,
+                null, null, null, RESOURCE_TYPES, dateFrom, null, first, max));
+    }
+
+    // Метод для загрузки сохранённой модели; без неё модель заполняется полным обходом
+    private void loadSnapshot() {
+        if (snapshotFile.isBlank() || !Files.exists(Path.of(snapshotFile))) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(snapshotFile))) {
+            SnapshotHeader header = objectMapper.readValue(reader.readLine(), SnapshotHeader.class);
+            if (System.currentTimeMillis() - header.syncedAt() > maxSnapshotAge.toMillis()) {
+                log.info("User read model snapshot from {} is too old, running full scan",
+                        Instant.ofEpochMilli(header.syncedAt()));
+                return;
+            }
+            ObjectReader userReader = objectMapper.readerFor(UserSnapshot.class);
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty()) {
+                    readModel.put(userReader.readValue(line));
+                }
+            }
+            cursor = header.cursor();
+            lastSnapshotAt = System.currentTimeMillis();
+            // Модель становится доступной для чтения после первого опроса событий с сохранённого курсора
+            populated = true;
+            resyncRequested.set(false);
+            log.info("User read model loaded {} users from {}", readModel.size(), snapshotFile);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Failed to load user read model snapshot from {}: {}", snapshotFile, ex.getMessage());
+            readModel.snapshots().clear();
+        }
+    }
+
+    // Метод для сохранения модели в файл: модель записывается во временный файл, который затем заменяет прежний
+    private void saveSnapshot() {
+        if (snapshotFile.isBlank() || readModel.syncedAtMillis() == 0) {
+            return;
+        }
+        Path target = Path.of(snapshotFile).toAbsolutePath();
+        try {
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp);
+                 SequenceWriter users = objectMapper.writer().withRootValueSeparator("\n").writeValues(writer)) {
+                users.write(new SnapshotHeader(cursor, readModel.syncedAtMillis()));
+                for (UserSnapshot user : readModel.snapshots()) {
+                    users.write(user);
+                }
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(temp);
+                throw ex;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotAt = System.currentTimeMillis();
+        } catch (IOException ex) {
+            log.warn("Failed to save user read model snapshot to {}: {}", target, ex.getMessage());
+        }
+    }
+
+    private static String eventKey(AdminEventRepresentation event) {
+        return event.getTime() + " " + event.getOperationType() + " " + event.getResourcePath();
+    }
+
+    private static double lagSeconds(UserReadModel readModel) {
+        Duration lag = readModel.lag();
+        return lag == null ? Double.NaN : lag.toMillis() / 1000.0;
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-read-model-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private record SnapshotHeader(long cursor, long syncedAt) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+// Индекс пользователей в памяти для поиска по началу имени пользователя, email, имени и фамилии.
+// Каждое слово хранится в упорядоченной карте под ключом "слово\0ID", поэтому поиск по префиксу - это обход
+// диапазона ключей за O(log n + limit) без обращения к Keycloak. Количество пользователей в индексе ограничено.
+// Индекс заполняется обходом Keycloak (UserSearchIndexLoader): новый индекс строится рядом с текущим и заменяет
+// его целиком, а созданные во время построения пользователи добавляются в оба индекса
+@Slf4j
+@Component
+public class UserSearchIndex {
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final int maxUsers;
+    private volatile Terms current;// Индекс, по которому выполняется поиск; null, пока индекс не построен
+    private Terms building;// Строящийся индекс, изменяется под блокировкой
+
+    public UserSearchIndex(@Value("${users.search.max-users:200000}") int maxUsers, MeterRegistry meterRegistry) {
+        this.maxUsers = maxUsers;
+        Gauge.builder("users.search.index.size", this, UserSearchIndex::size)
+                .description("Number of users in the search index")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public int size() {
+        Terms terms = current;
+        return terms != null ? terms.users.size() : 0;
+    }
+
+    // Метод для поиска пользователей, у которых с каждого слова запроса начинается одно из индексируемых полей
+    public List<UserSearchResponse> search(String query, int limit) {
+        Terms terms = current;
+        String[] words = normalize(query).split("\\s+");
+        if (terms == null || words[0].isEmpty()) {
+            return List.of();
+        }
+        // Кандидаты выбираются по самому длинному слову запроса, остальные слова проверяются у кандидата
+        String longest = Stream.of(words).max((a, b) -> Integer.compare(a.length(), b.length())).orElseThrow();
+        Map<UUID, UserSearchResponse> found = new LinkedHashMap<>();
+        for (UserSearchResponse user : terms.byPrefix(longest).values()) {
+            if (found.size() >= limit) {
+                break;
+            }
+            if (!found.containsKey(user.getId()) && matchesAll(user, words)) {
+                found.put(user.getId(), user);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    // Метод для добавления или обновления пользователя, например после создания через API
+    public synchronized void put(UserSearchResponse user) {
+        if (current != null) {
+            current.put(user);
+        }
+        if (building != null) {
+            building.put(user);
+        }
+    }
+
+    synchronized void startBuild() {
+        building = new Terms(maxUsers);
+    }
+
+    // Метод для добавления страницы пользователей в строящийся индекс; пользователи сверх ограничения не добавляются
+    synchronized void addToBuild(List<UserSearchResponse> users) {
+        for (UserSearchResponse user : users) {
+            if (!building.put(user) && !building.truncated) {
+                building.truncated = true;
+                log.warn("User search index is limited to {} users, the rest of the realm is not indexed", maxUsers);
+            }
+        }
+    }
+
+    synchronized void finishBuild() {
+        current = building;
+        building = null;
+    }
+
+    synchronized void abortBuild() {
+        building = null;
+    }
+
+    private static boolean matchesAll(UserSearchResponse user, String[] words) {
+        for (String word : words) {
+            if (terms(user).noneMatch(term -> term.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Stream<String> terms(UserSearchResponse user) {
+        return Stream.of(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName())
+                .filter(value -> value != null && !value.isBlank())
+                .map(UserSearchIndex::normalize)
+                .distinct();
+    }
+
+    private static String normalize(String value) {
+        return value.strip().toLowerCase(Locale.ROOT);
+    }
+
+    // Слова пользователей в упорядоченной карте и пользователи по ID для удаления прежних слов при обновлении
+    private static final class Terms {
+        private final NavigableMap<String, UserSearchResponse> byTerm = new ConcurrentSkipListMap<>();
+        private final Map<UUID, UserSearchResponse> users = new ConcurrentHashMap<>();
+        private final int maxUsers;
+        private boolean truncated;
+
+        Terms(int maxUsers) {
+            this.maxUsers = maxUsers;
+        }
+
+        boolean put(UserSearchResponse user) {
+            UserSearchResponse previous = users.get(user.getId());
+            if (previous == null && users.size() >= maxUsers) {
+                return false;
+            }
+            users.put(user.getId(), user);
+            if (previous != null) {
+                terms(previous).forEach(term -> byTerm.remove(term + KEY_SEPARATOR + previous.getId()));
+            }
+            terms(user).forEach(term -> byTerm.put(term + KEY_SEPARATOR + user.getId(), user));
+            return true;
+        }
+
+        NavigableMap<String, UserSearchResponse> byPrefix(String prefix) {
+            return byTerm.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.itm.space.backendresources.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Построение индекса поиска пользователей постраничным обходом Keycloak при старте и периодически после него,
+// чтобы в индекс попадали изменения, сделанные в обход API. Индексу нужны только имена, поэтому обход
+// запрашивает у Keycloak одни страницы списка пользователей, без ролей и групп
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserSearchIndexLoader implements DisposableBean {
+    private final KeycloakUserSource userSource;
+    private final UserSearchIndex userSearchIndex;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
+    // Строить индекс при старте приложения; иначе - только при первом периодическом обновлении
+    @Value("${users.search.preload:true}")
+    private boolean preload;
+    @Value("${users.search.refresh-interval:15m}")
+    private Duration refreshInterval;
+    // Пауза перед повторной попыткой после ошибки построения
+    @Value("${users.search.retry-interval:30s}")
+    private Duration retryInterval;
+
+    @PostConstruct
+    void start() {
+        scheduler.schedule(this::rebuildInBackground, preload ? 0 : refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    // Метод для построения нового индекса; до его завершения поиск выполняется по прежнему индексу
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        userSearchIndex.startBuild();
+        try {
+            userSource.scanUserNames(userSearchIndex::addToBuild);
+            userSearchIndex.finishBuild();
+        } catch (RuntimeException ex) {
+            userSearchIndex.abortBuild();
+            throw ex;
+        }
+        log.info("User search index built with {} users in {} ms", userSearchIndex.size(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    // Метод для фонового построения индекса с планированием следующего построения
+    private void rebuildInBackground() {
+        long delayMillis = refreshInterval.toMillis();
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            log.warn("User search index build failed: {}", ex.getMessage());
+            delayMillis = retryInterval.toMillis();
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::rebuildInBackground, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-search-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
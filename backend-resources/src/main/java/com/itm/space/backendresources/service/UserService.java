@@ -1,14 +1,27 @@
 package com.itm.space.backendresources.service;
 
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.api.response.UserSearchResponse;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UserService {
 
     void createUser(UserRequest userRequest);
 
+    List<UserBatchItemResponse> createUsers(List<UserRequest> userRequests);
+
     UserResponse getUserById(UUID id);
 
+    Map<UUID, UserResponse> getUsersByIds(List<UUID> ids);
+
+    void exportUsers(Consumer<List<UserResponse>> pageConsumer);
+
+    List<UserSearchResponse> searchUsers(String query, int limit);
+
 }
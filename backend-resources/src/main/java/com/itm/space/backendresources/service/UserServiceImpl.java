@@ -1,73 +1,641 @@
 package com.itm.space.backendresources.service;
 
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserBatchItemResponse;
 import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.api.response.UserSearchResponse;
+import com.itm.space.backendresources.configuration.CacheConfiguration;
 import com.itm.space.backendresources.exception.BackendResourcesException;
 import com.itm.space.backendresources.mapper.UserMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.keycloak.admin.client.CreatedResponseUtil;
 import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.GroupRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class UserServiceImpl implements UserService {
+public class UserServiceImpl implements UserService, KeycloakUserSource, DisposableBean {
     private final Keycloak keycloakClient;// Клиент для работы с Keycloak
     private final UserMapper userMapper;// Маппер для преобразования объектов
+    private final ExecutorService keycloakExecutor;// Ограниченный пул потоков для параллельных запросов к Keycloak
+    // Пул для запросов пользователя, ролей и групп при параллельном получении: задачи keycloakExecutor,
+    // ожидающие объединённый запрос, не могут занять все потоки, нужные для его выполнения
+    private final ExecutorService keycloakFetchExecutor;
+    private final MeterRegistry meterRegistry;// Реестр метрик
+    private final KeycloakMetrics keycloakMetrics;// Замеры запросов к Keycloak по операции, исходу и статусу
+    private final CacheManager cacheManager;// Менеджер кэшей для инвалидации данных пользователей
+    // Адаптивный лимит одновременных запросов к Keycloak: при замедлении Keycloak не занимает все потоки запросов
+    private final AdaptiveConcurrencyLimiter keycloakConcurrencyLimiter;
+    // Автоматический выключатель для чтения пользователей: при недоступности Keycloak запросы не ждут таймаута
+    private final CircuitBreaker keycloakCircuitBreaker;
+    // Последние известные данные пользователей, отдаваемые с пометкой об устаревании при недоступности Keycloak
+    private final com.github.benmanes.caffeine.cache.Cache<UUID, UserResponse> lastKnownUsers;
+    // Пользователи, отданные из устаревших данных: обновляются в фоне после восстановления Keycloak
+    private final Set<UUID> staleUsers = ConcurrentHashMap.newKeySet();
+    // Локальная модель чтения пользователей; используется, только если включена и не отстала от Keycloak
+    private final UserReadModel userReadModel;
+    // Индекс поиска пользователей по префиксу, пополняемый при создании пользователей
+    private final UserSearchIndex userSearchIndex;
+    // Объединение одновременных запросов одного и того же пользователя в один запрос к Keycloak
+    private final SingleFlight<UUID, UserResponse> userLoads = new SingleFlight<>();
+    // Отдельный поток для фонового обновления устаревших пользователей: задача никогда не выполняется в потоке,
+    // закрывшем выключатель, а повторные запуски во время обновления схлопываются в один
+    private final ThreadPoolExecutor staleRefreshExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), staleRefreshThreadFactory(), new ThreadPoolExecutor.DiscardPolicy());
 
     @Value("${keycloak.realm}")// Внедряем значение из конфигурации для реального пространства Keycloak
     private String realm;
 
+    // Запрашивать пользователя, его роли и группы параллельно, а не последовательно
+    @Value("${keycloak.user-fetch.parallel:false}")
+    private boolean parallelFetch;
+
+    // Максимальное количество пользователей в одном пакетном запросе
+    @Value("${users.batch.max-size:1000}")
+    private int batchMaxSize;
+    // Количество одновременных запросов к Keycloak при пакетном создании пользователей
+    @Value("${users.batch.concurrency:8}")
+    private int batchConcurrency;
+    // Максимальное количество ID в одном запросе на получение нескольких пользователей
+    @Value("${users.lookup.max-ids:100}")
+    private int lookupMaxIds;
+    // Количество пользователей, одновременно запрашиваемых из Keycloak при получении нескольких пользователей
+    @Value("${users.lookup.concurrency:8}")
+    private int lookupConcurrency;
+    // Количество пользователей на странице выгрузки и полного обхода модели чтения, запрашиваемых из Keycloak
+    // одним запросом
+    @Value("${users.export.page-size:500}")
+    private int exportPageSize;
+    // Количество пользователей страницы обхода, для которых роли и группы запрашиваются одновременно
+    @Value("${users.export.concurrency:4}")
+    private int exportConcurrency;
+    // Загружать следующую страницу выгрузки, пока текущая передаётся клиенту
+    @Value("${users.export.prefetch:true}")
+    private boolean exportPrefetch;
+
+    // Метод для регистрации метрики количества объединённых запросов
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("keycloak.user.fetch.coalesced", userLoads, SingleFlight::coalescedCount)
+                .description("Number of user lookups that joined an in-flight Keycloak request for the same id")
+                .register(meterRegistry);
+        keycloakCircuitBreaker.onStateChange(state -> {
+            if (state == CircuitBreaker.State.CLOSED) {
+                staleRefreshExecutor.execute(this::refreshStaleUsers);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        staleRefreshExecutor.shutdownNow();
+    }
+
     public void createUser(UserRequest userRequest) {
+        submitUser(userRequest);
+    }
+
+    // Метод для пакетного создания пользователей с ограниченным количеством параллельных запросов
+    @Override
+    public List<UserBatchItemResponse> createUsers(List<UserRequest> userRequests) {
+        if (userRequests.size() > batchMaxSize) {
+            throw new BackendResourcesException("Batch size should not exceed " + batchMaxSize, HttpStatus.BAD_REQUEST);
+        }
+        return runConcurrently(userRequests.size(), batchConcurrency,
+                index -> createBatchItem(index, userRequests.get(index)));
+    }
+
+    // Метод для создания одного пользователя из пакета: ошибка не прерывает обработку остальных
+    private UserBatchItemResponse createBatchItem(int index, UserRequest userRequest) {
+        try {
+            UUID userId = submitUser(userRequest);
+            return new UserBatchItemResponse(index, userId, HttpStatus.CREATED.value(), null);
+        } catch (BackendResourcesException ex) {
+            HttpStatus httpStatus = ex.getHttpStatus() != null ? ex.getHttpStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+            return new UserBatchItemResponse(index, null, httpStatus.value(), ex.getMessage());
+        } catch (RuntimeException ex) {
+            log.error("Exception on \"createUsers\": ", ex);
+            return new UserBatchItemResponse(index, null, HttpStatus.INTERNAL_SERVER_ERROR.value(), ex.getMessage());
+        }
+    }
+
+    // Метод для создания пользователя в Keycloak, возвращает ID созданного пользователя
+    private UUID submitUser(UserRequest userRequest) {
         // Подготавливаем представление учетных данных пользователя
         CredentialRepresentation password = preparePasswordRepresentation(userRequest.getPassword());
         UserRepresentation user = prepareUserRepresentation(userRequest, password);
         try {
             // Создаем пользователя в Keycloak и получаем ответ
-            Response response = keycloakClient.realm(realm).users().create(user);
+            Response response = withBulkhead(() -> keycloakMetrics.record("create",
+                    () -> keycloakClient.realm(realm).users().create(user), Response::getStatus));
             // Извлекаем ID созданного пользователя из ответа
             String userId = CreatedResponseUtil.getCreatedId(response);
             log.info("Created UserId: {}", userId);// Логируем ID созданного пользователя
+            UUID id = UUID.fromString(userId);
+            evictUser(id);// Удаляем возможную запись о пользователе из кэша
+            userSearchIndex.put(new UserSearchResponse(id, userRequest.getUsername(), userRequest.getFirstName(),
+                    userRequest.getLastName(), userRequest.getEmail()));
+            return id;
         } catch (WebApplicationException ex) {
             log.error("Exception on \"createUser\": ", ex);
             throw new BackendResourcesException(ex.getMessage(), HttpStatus.resolve(ex.getResponse().getStatus()));
         }
     }
 
-    // Метод для получения пользователя по ID
+    // Метод для получения пользователя по ID: из локальной модели чтения, из кэша, из Keycloak или, если Keycloak
+    // недоступен, из последних известных данных с пометкой об устаревании.
+    // Кэш заполняется вручную, а не через @Cacheable, чтобы устаревший ответ не попал в кэш
     @Override
     public UserResponse getUserById(UUID id) {
-        UserRepresentation userRepresentation;
-        List<RoleRepresentation> userRoles;
-        List<GroupRepresentation> userGroups;
+        UserResponse fromReadModel = userReadModel.find(id);
+        if (fromReadModel != null) {
+            return fromReadModel;
+        }
+        Cache usersCache = usersCache();
+        UserResponse cached = usersCache.get(id, UserResponse.class);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            userRepresentation = keycloakClient.realm(realm).users().get(String.valueOf(id)).toRepresentation();
-            userRoles = keycloakClient.realm(realm)
-                    .users().get(String.valueOf(id)).roles().getAll().getRealmMappings();
-            userGroups = keycloakClient.realm(realm).users().get(String.valueOf(id)).groups();
+            UserResponse userResponse = loadUser(id, parallelFetch);
+            usersCache.put(id, userResponse);
+            return userResponse;
+        } catch (NotFoundException ex) {
+            log.error("Exception on \"getUserById\": ", ex);
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (RuntimeException ex) {
+            UserResponse lastKnown = lastKnownUsers.getIfPresent(id);
+            if (lastKnown != null) {
+                log.warn("Serving stale user {} because Keycloak is unavailable: {}", id, ex.getMessage());
+                staleUsers.add(id);
+                return lastKnown.asStale();
+            }
+            if (ex instanceof BackendResourcesException backendResourcesException) {
+                throw backendResourcesException;
+            }
             log.error("Exception on \"getUserById\": ", ex);
             throw new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
+    }
+
+    // Метод для получения нескольких пользователей по ID: отсутствующие в Keycloak пользователи возвращаются как null
+    @Override
+    public Map<UUID, UserResponse> getUsersByIds(List<UUID> ids) {
+        // Убираем повторяющиеся ID, сохраняя порядок
+        List<UUID> uniqueIds = List.copyOf(new LinkedHashSet<>(ids));
+        if (uniqueIds.size() > lookupMaxIds) {
+            throw new BackendResourcesException("Lookup size should not exceed " + lookupMaxIds, HttpStatus.BAD_REQUEST);
+        }
+        Cache usersCache = usersCache();
+        List<UserResponse> users;
+        try {
+            // Каждый пользователь запрашивается последовательно, параллельность обеспечивается между пользователями
+            users = runConcurrently(uniqueIds.size(), lookupConcurrency,
+                    index -> lookupUser(usersCache, uniqueIds.get(index)));
+        } catch (BackendResourcesException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.error("Exception on \"getUsersByIds\": ", ex);
+            throw new BackendResourcesException(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        Map<UUID, UserResponse> result = new LinkedHashMap<>();
+        for (int i = 0; i < uniqueIds.size(); i++) {
+            result.put(uniqueIds.get(i), users.get(i));
+        }
+        return result;
+    }
+
+    // Метод для выгрузки всех пользователей постранично: страница передаётся потребителю после загрузки ролей и групп.
+    // Выгрузка не заполняет кэши, чтобы не вытеснять из них часто запрашиваемых пользователей
+    @Override
+    public void exportUsers(Consumer<List<UserResponse>> pageConsumer) {
+        scanUsers(users -> pageConsumer.accept(users.stream().map(UserSnapshot::toResponse).toList()));
+    }
+
+    // Метод для поиска пользователей по началу имени пользователя, email, имени или фамилии без обращения к Keycloak
+    @Override
+    public List<UserSearchResponse> searchUsers(String query, int limit) {
+        if (!userSearchIndex.isReady()) {
+            throw new BackendResourcesException("User search index is not ready, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return userSearchIndex.search(query, limit);
+    }
+
+    // Метод для постраничного обхода всех пользователей с ролями и группами.
+    // В памяти одновременно не больше двух страниц (текущая и загружаемая заранее), независимо от количества
+    // пользователей
+    @Override
+    public void scanUsers(Consumer<List<UserSnapshot>> pageConsumer) {
+        // Остановка загрузки следующей страницы, если клиент отключился или запись завершилась ошибкой
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try {
+            CompletableFuture<ScanPage> page = loadScanPage(0, cancelled);
+            for (int first = exportPageSize; ; first += exportPageSize) {
+                ScanPage current = joinScanPage(page);
+                CompletableFuture<ScanPage> nextPage =
+                        exportPrefetch && !current.last() ? loadScanPage(first, cancelled) : null;
+                if (!current.users().isEmpty()) {
+                    pageConsumer.accept(current.users());
+                }
+                if (current.last()) {
+                    return;
+                }
+                page = nextPage != null ? nextPage : loadScanPage(first, cancelled);
+            }
+        } finally {
+            cancelled.set(true);
+        }
+    }
+
+    // Метод для постраничного обхода пользователей для индекса поиска: только страницы списка, без запросов
+    // ролей и групп каждого пользователя
+    @Override
+    public void scanUserNames(Consumer<List<UserSearchResponse>> pageConsumer) {
+        for (int first = 0; ; first += exportPageSize) {
+            int offset = first;
+            List<UserRepresentation> representations = withBulkhead(() -> keycloakMetrics.record("list",
+                    () -> keycloakClient.realm(realm).users().list(offset, exportPageSize)));
+            if (!representations.isEmpty()) {
+                pageConsumer.accept(representations.stream()
+                        .map(user -> new UserSearchResponse(UUID.fromString(user.getId()), user.getUsername(),
+                                user.getFirstName(), user.getLastName(), user.getEmail()))
+                        .toList());
+            }
+            if (representations.size() < exportPageSize) {
+                return;
+            }
+        }
+    }
+
+    // Метод для получения пользователя с ролями и группами для локальной модели чтения; возвращает null,
+    // если пользователь удалён. Модель обновляется в фоне, поэтому выключатель не применяется
+    @Override
+    public UserSnapshot fetchUser(UUID id) {
+        UserResource userResource = keycloakClient.realm(realm).users().get(String.valueOf(id));
+        try {
+            return toSnapshot(withBulkhead(() -> keycloakMetrics.record("user", userResource::toRepresentation)));
+        } catch (NotFoundException ex) {
+            return null;
+        }
+    }
+
+    // Страница обхода; неполная страница из Keycloak - последняя. Удалённые во время обхода пользователи
+    // в страницу не попадают, поэтому признак последней страницы определяется по ответу Keycloak
+    private record ScanPage(List<UserSnapshot> users, boolean last) {
+    }
+
+    // Метод для асинхронной загрузки страницы обхода
+    private CompletableFuture<ScanPage> loadScanPage(int first, AtomicBoolean cancelled) {
+        return CompletableFuture.supplyAsync(() -> withBulkhead(() -> keycloakMetrics.record("list",
+                        () -> keycloakClient.realm(realm).users().list(first, exportPageSize))), keycloakExecutor)
+                .thenCompose(representations -> mapConcurrently(representations, exportConcurrency,
+                        this::toSnapshot, cancelled::get)
+                        .thenApply(users -> new ScanPage(users.stream().filter(Objects::nonNull).toList(),
+                                representations.size() < exportPageSize)));
+    }
+
+    // Метод для получения ролей и групп пользователя из списка; возвращает null, если пользователь уже удалён.
+    // Каждый запрос обхода проходит через общий лимит одновременных запросов, как и запросы API
+    private UserSnapshot toSnapshot(UserRepresentation userRepresentation) {
+        UserResource userResource = keycloakClient.realm(realm).users().get(userRepresentation.getId());
+        try {
+            List<RoleRepresentation> userRoles = withBulkhead(() ->
+                    keycloakMetrics.record("roles", () -> userResource.roles().getAll().getRealmMappings()));
+            List<GroupRepresentation> userGroups = withBulkhead(() ->
+                    keycloakMetrics.record("groups", userResource::groups));
+            UserResponse userResponse = keycloakMetrics.recordMapping(
+                    () -> userMapper.userRepresentationToUserResponse(userRepresentation, userRoles, userGroups));
+            return UserSnapshot.of(UUID.fromString(userRepresentation.getId()), userRepresentation.getUsername(),
+                    userResponse);
+        } catch (NotFoundException ex) {
+            return null;
+        }
+    }
+
+    private static ScanPage joinScanPage(CompletableFuture<ScanPage> page) {
+        try {
+            return page.join();
+        } catch (CompletionException ex) {
+            Throwable cause = unwrap(ex);
+            if (cause instanceof BackendResourcesException backendResourcesException) {
+                throw backendResourcesException;
+            }
+            log.error("Exception on \"scanUsers\": ", cause);
+            if (cause instanceof WebApplicationException webApplicationException) {
+                throw new BackendResourcesException(cause.getMessage(),
+                        HttpStatus.resolve(webApplicationException.getResponse().getStatus()));
+            }
+            throw new BackendResourcesException(cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Метод для получения пользователя из локальной модели чтения, из кэша или из Keycloak,
+    // возвращает null, если пользователь не найден
+    private UserResponse lookupUser(Cache usersCache, UUID id) {
+        UserResponse fromReadModel = userReadModel.find(id);
+        if (fromReadModel != null) {
+            return fromReadModel;
+        }
+        UserResponse cached = usersCache.get(id, UserResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            UserResponse userResponse = loadUser(id, false);
+            usersCache.put(id, userResponse);
+            return userResponse;
+        } catch (NotFoundException ex) {
+            return null;
+        }
+    }
+
+    // Метод для получения пользователя, его ролей и групп из Keycloak
+    // Одновременные вызовы для одного ID разделяют один запрос и его результат или ошибку
+    private UserResponse loadUser(UUID id, boolean parallel) {
+        return userLoads.execute(id, () -> {
+            try {
+                UserResponse userResponse = withCircuitBreaker(() -> withBulkhead(() -> {
+                    // Получаем ресурс пользователя один раз и переиспользуем его для всех запросов
+                    UserResource userResource = keycloakClient.realm(realm).users().get(String.valueOf(id));
+                    return parallel ? fetchUserInParallel(userResource) : fetchUserSequentially(userResource);
+                }));
+                lastKnownUsers.put(id, userResponse);
+                return userResponse;
+            } catch (NotFoundException ex) {
+                lastKnownUsers.invalidate(id);// Пользователь удалён - устаревшие данные больше не отдаём
+                throw ex;
+            }
+        });
+    }
+
+    // Метод для фонового обновления пользователей, отданных из устаревших данных, после восстановления Keycloak
+    private void refreshStaleUsers() {
+        Cache usersCache = usersCache();
+        for (UUID id : List.copyOf(staleUsers)) {
+            staleUsers.remove(id);
+            try {
+                usersCache.put(id, loadUser(id, false));
+            } catch (NotFoundException ex) {
+                usersCache.evict(id);
+            } catch (RuntimeException ex) {
+                log.warn("Background refresh of stale user {} failed: {}", id, ex.getMessage());
+                staleUsers.add(id);
+                return;// Keycloak снова недоступен - обновление продолжится после следующего восстановления
+            }
+        }
+    }
+
+    // Метод для выполнения чтения из Keycloak через автоматический выключатель.
+    // Пока выключатель разомкнут, чтение сразу отклоняется с 503
+    private <T> T withCircuitBreaker(Supplier<T> operation) {
+        if (!keycloakCircuitBreaker.tryAcquire()) {
+            throw new BackendResourcesException("Keycloak is unavailable, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        long start = System.nanoTime();
+        try {
+            T result = operation.get();
+            keycloakCircuitBreaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (BackendResourcesException ex) {
+            keycloakCircuitBreaker.onIgnored();// Запрос отклонён лимитом одновременных запросов и не дошёл до Keycloak
+            throw ex;
+        } catch (WebApplicationException ex) {
+            // Ответ Keycloak с ошибкой клиента (например, 404) означает, что Keycloak доступен
+            if (ex.getResponse().getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                keycloakCircuitBreaker.onSuccess(System.nanoTime() - start);
+            } else {
+                keycloakCircuitBreaker.onFailure(System.nanoTime() - start);
+            }
+            throw ex;
+        } catch (RuntimeException | Error ex) {
+            keycloakCircuitBreaker.onFailure(System.nanoTime() - start);
+            throw ex;
+        }
+    }
+
+    // Метод для выполнения операции с Keycloak в пределах адаптивного лимита одновременных запросов.
+    // Сверх лимита операция сразу отклоняется с 503, не дожидаясь ответа Keycloak
+    private <T> T withBulkhead(Supplier<T> operation) {
+        AdaptiveConcurrencyLimiter.Permit permit = keycloakConcurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            throw new BackendResourcesException("Keycloak is overloaded, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        try {
+            T result = operation.get();
+            permit.onSuccess();
+            return result;
+        } catch (WebApplicationException ex) {
+            // Ответ Keycloak с ошибкой клиента (404, 409) - нормальная задержка, ошибка сервера - признак перегрузки
+            if (ex.getResponse().getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                permit.onSuccess();
+            } else {
+                permit.onDropped();
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            permit.onDropped();// Таймаут или ошибка соединения
+            throw ex;
+        } finally {
+            permit.release();
+        }
+    }
+
+    // Метод для получения кэша пользователей
+    private Cache usersCache() {
+        Cache usersCache = cacheManager.getCache(CacheConfiguration.USERS_CACHE);
+        return usersCache != null ? usersCache : new NoOpCache(CacheConfiguration.USERS_CACHE);
+    }
+
+    // Метод для удаления пользователя из кэша
+    private void evictUser(UUID id) {
+        usersCache().evict(id);
+    }
+
+    // Метод для выполнения задач в пуле Keycloak с ограничением количества одновременно выполняемых задач
+    private <T> List<T> runConcurrently(int count, int concurrency, IntFunction<T> task) {
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<T>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            // Ждём, пока количество одновременных задач не опустится ниже лимита
+            permits.acquireUninterruptibly();
+            results.add(CompletableFuture.supplyAsync(() -> task.apply(index), keycloakExecutor)
+                    .whenComplete((result, ex) -> permits.release()));
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException ex) {
+            throw asRuntimeException(unwrap(ex));
+        }
+    }
+
+    // Метод для асинхронного преобразования элементов списка в пуле Keycloak не более чем concurrency задачами
+    // одновременно. В отличие от runConcurrently поток не ждёт завершения задач: каждая задача по завершении
+    // запускает следующую, поэтому метод можно вызывать и из потоков самого пула.
+    // После отмены новые задачи не запускаются, а для необработанных элементов возвращается null
+    private <T, R> CompletableFuture<List<R>> mapConcurrently(List<T> items, int concurrency, Function<T, R> task,
+                                                             BooleanSupplier cancelled) {
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<>(items.size());
+        AtomicInteger nextIndex = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(concurrency, items.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = runNext(items, task, results, nextIndex, cancelled);
+        }
+        return CompletableFuture.allOf(workers).thenApply(ignored -> {
+            List<R> list = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                list.add(results.get(i));
+            }
+            return list;
+        });
+    }
+
+    private <T, R> CompletableFuture<Void> runNext(List<T> items, Function<T, R> task, AtomicReferenceArray<R> results,
+                                                   AtomicInteger nextIndex, BooleanSupplier cancelled) {
+        int index = nextIndex.getAndIncrement();
+        if (index >= items.size() || cancelled.getAsBoolean()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> results.set(index, task.apply(items.get(index))), keycloakExecutor)
+                .thenCompose(ignored -> runNext(items, task, results, nextIndex, cancelled));
+    }
+
+    // Метод для последовательного получения пользователя, его ролей и групп
+    private UserResponse fetchUserSequentially(UserResource userResource) {
+        UserRepresentation userRepresentation = keycloakMetrics.record("user", userResource::toRepresentation);
+        List<RoleRepresentation> userRoles =
+                keycloakMetrics.record("roles", () -> userResource.roles().getAll().getRealmMappings());
+        List<GroupRepresentation> userGroups = keycloakMetrics.record("groups", userResource::groups);
         // Преобразуем представление пользователя в ответ
-        return userMapper.userRepresentationToUserResponse(userRepresentation, userRoles, userGroups);
+        return keycloakMetrics.recordMapping(
+                () -> userMapper.userRepresentationToUserResponse(userRepresentation, userRoles, userGroups));
+    }
+
+    // Метод для параллельного получения пользователя, его ролей и групп
+    private UserResponse fetchUserInParallel(UserResource userResource) {
+        FetchLeg<UserRepresentation> userLeg = submitFetch("user", userResource::toRepresentation);
+        FetchLeg<List<RoleRepresentation>> rolesLeg =
+                submitFetch("roles", () -> userResource.roles().getAll().getRealmMappings());
+        FetchLeg<List<GroupRepresentation>> groupsLeg = submitFetch("groups", userResource::groups);
+        CompletableFuture<UserRepresentation> user = userLeg.result();
+        CompletableFuture<List<RoleRepresentation>> roles = rolesLeg.result();
+        CompletableFuture<List<GroupRepresentation>> groups = groupsLeg.result();
+
+        // При ошибке одного из запросов запоминаем её и отменяем остальные запросы
+        List<FetchLeg<?>> legs = List.of(userLeg, rolesLeg, groupsLeg);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        legs.forEach(leg -> leg.result().whenComplete((result, ex) -> {
+            if (ex != null && !(ex instanceof CancellationException) && failure.compareAndSet(null, unwrap(ex))) {
+                legs.forEach(FetchLeg::cancel);
+            }
+        }));
+        try {
+            // Преобразуем представление пользователя в ответ
+            UserRepresentation userRepresentation = user.join();
+            List<RoleRepresentation> userRoles = roles.join();
+            List<GroupRepresentation> userGroups = groups.join();
+            return keycloakMetrics.recordMapping(
+                    () -> userMapper.userRepresentationToUserResponse(userRepresentation, userRoles, userGroups));
+        } catch (CompletionException | CancellationException ex) {
+            // Запрос мог быть отменён из-за ошибки соседнего запроса - пробрасываем исходную ошибку
+            throw asRuntimeException(failure.get() != null ? failure.get() : unwrap(ex));
+        }
+    }
+
+    // Метод для асинхронного выполнения запроса получения пользователя в отдельном ограниченном пуле потоков
+    private <T> FetchLeg<T> submitFetch(String operation, Supplier<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = keycloakFetchExecutor.submit(() -> {
+            try {
+                result.complete(keycloakMetrics.record(operation, request));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return new FetchLeg<>(result, task);
+    }
+
+    // Запрос параллельного получения пользователя: результат для ожидания и задача пула для отмены.
+    // Отмена CompletableFuture не затрагивает поток, выполняющий запрос, поэтому прерывается задача пула:
+    // прерывание снимает ожидание соединения из пула HTTP-клиента, а на виртуальных потоках - и чтение ответа.
+    // Чтение ответа на обычном потоке не прерывается и завершается не позже keycloak.http.read-timeout
+    private record FetchLeg<T>(CompletableFuture<T> result, Future<?> task) {
+        void cancel() {
+            // Результат отменяется первым: ошибка прерванного запроса не должна подменить исходную ошибку.
+            // Задача, отменённая до запуска, тоже не завершила бы результат сама
+            result.cancel(false);
+            task.cancel(true);
+        }
+    }
+
+    // Метод для извлечения исходной ошибки из обёртки CompletableFuture
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable ex) {
+        return ex instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(ex);
+    }
+
+    private static CustomizableThreadFactory staleRefreshThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stale-users-refresh-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
     }
 
     // Метод для подготовки представления учетных данных
-    private CredentialRepresentation preparePasswordRepresentation(String password) {
+    static CredentialRepresentation preparePasswordRepresentation(String password) {
         CredentialRepresentation credentialRepresentation = new CredentialRepresentation();
         credentialRepresentation.setTemporary(false);
         credentialRepresentation.setType(CredentialRepresentation.PASSWORD);
@@ -76,7 +644,7 @@ public class UserServiceImpl implements UserService {
     }
 
     // Метод для подготовки представления пользователя
-    private UserRepresentation prepareUserRepresentation(UserRequest userRequest,
+    static UserRepresentation prepareUserRepresentation(UserRequest userRequest,
                                                          CredentialRepresentation credentialRepresentation) {
         UserRepresentation newUser = new UserRepresentation();
         newUser.setUsername(userRequest.getUsername());
@@ -0,0 +1,21 @@
+package com.itm.space.backendresources.service;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+
+import java.util.List;
+import java.util.UUID;
+
+// Данные пользователя в локальной модели чтения: ответ API вместе с ID и именем пользователя.
+// Хранится плоской записью, чтобы модель можно было сохранить в файл и загрузить обратно без дополнительных настроек
+public record UserSnapshot(UUID id, String username, String firstName, String lastName, String email,
+                           List<String> roles, List<String> groups) {
+
+    public static UserSnapshot of(UUID id, String username, UserResponse user) {
+        return new UserSnapshot(id, username, user.getFirstName(), user.getLastName(), user.getEmail(),
+                user.getRoles(), user.getGroups());
+    }
+
+    public UserResponse toResponse() {
+        return new UserResponse(firstName, lastName, email, roles, groups);
+    }
+}
@@ -4,16 +4,23 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.itm.space.backendresources.api.response.UserResponse;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.util.UUID;
+
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 
-@SpringBootTest
+// Индекс поиска не строится при старте, чтобы фоновый обход Keycloak не влиял на заглушки в тестах
+@SpringBootTest(properties = "users.search.preload=false")
 @AutoConfigureMockMvc
 public abstract class BaseIntegrationTest {
 
@@ -25,6 +32,19 @@ public abstract class BaseIntegrationTest {
     @Autowired
     protected MockMvc mvc;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private Cache<UUID, UserResponse> lastKnownUsers;
+
+    // Очищаем кэши перед каждым тестом, чтобы тесты не зависели друг от друга
+    @BeforeEach
+    void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        lastKnownUsers.invalidateAll();
+    }
+
     protected MockHttpServletRequestBuilder requestToJson(MockHttpServletRequestBuilder requestBuilder) {
         return requestBuilder
                 .contentType(APPLICATION_JSON);
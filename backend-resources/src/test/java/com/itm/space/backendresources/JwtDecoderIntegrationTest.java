@@ -0,0 +1,124 @@
+package com.itm.space.backendresources;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты декодера JWT с заранее загруженным набором ключей из локального файла
+public class JwtDecoderIntegrationTest extends BaseIntegrationTest {
+    private static final RSAKey SIGNING_KEY = generateKey("test-key");
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuer;
+
+    // Записываем открытый ключ во временный файл и включаем режим prefetch
+    @DynamicPropertySource
+    static void jwksProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path jwksFile = Files.createTempFile("jwks", ".json");
+        Files.writeString(jwksFile, new JWKSet(SIGNING_KEY.toPublicJWK()).toString());
+        jwksFile.toFile().deleteOnExit();
+        registry.add("jwt.jwks.prefetch", () -> "true");
+        registry.add("jwt.jwks.file", () -> jwksFile.toUri().toString());
+    }
+
+    // Тест доступа с токеном, подписанным известным ключом
+    @Test
+    public void helloWithSignedToken() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token(SIGNING_KEY, List.of("MODERATOR"))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("mihail"));
+    }
+
+    // Тест доступа с токеном без роли MODERATOR
+    @Test
+    public void helloWithoutModeratorRole() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token(SIGNING_KEY, List.of("USER"))))
+                .andExpect(status().isForbidden());
+    }
+
+    // Порядок и повторы ролей в токене не влияют на авторизации
+    @Test
+    public void helloWithReorderedRoles() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token(SIGNING_KEY, List.of("USER", "MODERATOR"))))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION,
+                                "Bearer " + token(SIGNING_KEY, List.of("MODERATOR", "USER", "MODERATOR"))))
+                .andExpect(status().isOk());
+    }
+
+    // Токен без realm_access проходит аутентификацию, но не даёт ролей
+    @Test
+    public void helloWithoutRealmAccess() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenWithRealmAccess(SIGNING_KEY, null)))
+                .andExpect(status().isForbidden());
+    }
+
+    // Токен с realm_access без списка ролей не даёт ролей
+    @Test
+    public void helloWithoutRoles() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenWithRealmAccess(SIGNING_KEY, Map.of())))
+                .andExpect(status().isForbidden());
+    }
+
+    // Тест доступа с токеном, подписанным неизвестным ключом
+    @Test
+    public void helloWithUnknownKey() throws Exception {
+        mvc.perform(get("/api/users/hello")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token(generateKey("unknown-key"), List.of("MODERATOR"))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String token(RSAKey key, List<String> roles) throws JOSEException {
+        return tokenWithRealmAccess(key, Map.of("roles", roles));
+    }
+
+    // realm_access == null - токен без этого claim
+    private String tokenWithRealmAccess(RSAKey key, Map<String, Object> realmAccess) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject("mihail")
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .claim("realm_access", realmAccess)
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static RSAKey generateKey(String keyId) {
+        try {
+            return new RSAKeyGenerator(2048).keyID(keyId).generate();
+        } catch (JOSEException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
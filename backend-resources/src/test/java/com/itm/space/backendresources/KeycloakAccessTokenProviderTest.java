@@ -0,0 +1,182 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.configuration.KeycloakAccessTokenProvider;
+import com.itm.space.backendresources.configuration.KeycloakBearerTokenFilter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.token.TokenManager;
+import org.keycloak.representations.AccessTokenResponse;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Тесты хранилища токена сервисного аккаунта: TokenManager выдаёт токены token-1, token-2, ...,
+// срок их действия отсчитывается по управляемым часам теста
+public class KeycloakAccessTokenProviderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private final TokenManager tokenManager = mock(TokenManager.class);
+    private final AtomicInteger grants = new AtomicInteger();
+    private KeycloakAccessTokenProvider tokenProvider;
+
+    @AfterEach
+    void stop() {
+        if (tokenProvider != null) {
+            tokenProvider.destroy();
+        }
+    }
+
+    // Токен обновляется в фоне за refresh-before-expiry до истечения срока, запросы не ждут обновления
+    @Test
+    public void refreshesTokenBeforeExpiry() throws Exception {
+        // Первый токен действует на секунду дольше refresh-before-expiry: следующее обновление - через секунду
+        when(tokenManager.grantToken()).thenAnswer(invocation -> {
+            int grant = grants.incrementAndGet();
+            return tokenResponse("token-" + grant, grant == 1 ? Duration.ofSeconds(31) : Duration.ofMinutes(10));
+        });
+        tokenProvider = provider(Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(10));
+        awaitGrants(1);
+        assertEquals("token-1", tokenProvider.getAccessTokenString());
+
+        awaitGrants(2);
+        assertEquals("token-2", tokenProvider.getAccessTokenString());
+        assertEquals(0, refreshCount("sync"));
+        assertEquals(2, refreshCount("background"));
+    }
+
+    // Если фоновое обновление не успело и токен истёк, запрос получает новый токен синхронно
+    @Test
+    public void refreshesExpiredTokenSynchronously() throws Exception {
+        grantTokensValidFor(Duration.ofMinutes(10));
+        tokenProvider = provider(Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(10));
+        awaitGrants(1);
+
+        clock.advance(Duration.ofMinutes(10).minusSeconds(5));
+        assertEquals("token-2", tokenProvider.getAccessTokenString());
+        assertEquals("token-2", tokenProvider.getAccessTokenString());
+        assertEquals(1, refreshCount("sync"));
+    }
+
+    // После ошибки фонового обновления попытка повторяется через retry-interval
+    @Test
+    public void retriesAfterFailedRefresh() throws Exception {
+        AccessTokenResponse response = tokenResponse("token-1", Duration.ofMinutes(10));
+        when(tokenManager.grantToken()).thenAnswer(invocation -> {
+            if (grants.incrementAndGet() == 1) {
+                throw new ProcessingException("Connection refused");
+            }
+            return response;
+        });
+        tokenProvider = provider(Duration.ZERO, Duration.ofSeconds(5), Duration.ofMillis(50));
+
+        awaitGrants(2);
+        assertEquals("token-1", tokenProvider.getAccessTokenString());
+        assertEquals(1, meterRegistry.get("keycloak.admin.token.refresh")
+                .tag("mode", "background").tag("outcome", "error").timer().count());
+        assertEquals(0, refreshCount("sync"));
+    }
+
+    // Токен, отклонённый Keycloak ответом 401, сбрасывается фильтром, и следующий запрос получает новый
+    @Test
+    public void invalidatesTokenRejectedByKeycloak() throws Exception {
+        grantTokensValidFor(Duration.ofMinutes(10));
+        tokenProvider = provider(Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(10));
+        awaitGrants(1);
+        KeycloakBearerTokenFilter filter = new KeycloakBearerTokenFilter(tokenProvider);
+        ClientRequestContext request = mock(ClientRequestContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        when(request.getHeaders()).thenReturn(headers);
+        ClientResponseContext response = mock(ClientResponseContext.class);
+        when(response.getStatus()).thenReturn(401);
+
+        filter.filter(request);
+        assertEquals("Bearer token-1", headers.getFirst(HttpHeaders.AUTHORIZATION));
+        filter.filter(request, response);
+
+        filter.filter(request);
+        assertEquals("Bearer token-2", headers.getFirst(HttpHeaders.AUTHORIZATION));
+        assertEquals(1, refreshCount("sync"));
+        // Сброс уже заменённого токена не затрагивает новый
+        tokenProvider.invalidate("token-1");
+        assertEquals("token-2", tokenProvider.getAccessTokenString());
+    }
+
+    private KeycloakAccessTokenProvider provider(Duration refreshBeforeExpiry, Duration minValidity,
+                                                 Duration retryInterval) {
+        return new KeycloakAccessTokenProvider(tokenManager, refreshBeforeExpiry, minValidity, retryInterval,
+                meterRegistry, clock);
+    }
+
+    private void grantTokensValidFor(Duration validity) {
+        when(tokenManager.grantToken()).thenAnswer(invocation ->
+                tokenResponse("token-" + grants.incrementAndGet(), validity));
+    }
+
+    private static AccessTokenResponse tokenResponse(String token, Duration validity) {
+        AccessTokenResponse response = new AccessTokenResponse();
+        response.setToken(token);
+        response.setExpiresIn(validity.toSeconds());
+        return response;
+    }
+
+    private long refreshCount(String mode) {
+        return meterRegistry.find("keycloak.admin.token.refresh").tag("mode", mode).timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private void awaitGrants(int expected) throws InterruptedException {
+        // Токен сохраняется после завершения запроса, поэтому ждём и запрос, и замер его времени
+        BooleanSupplier done = () -> grants.get() >= expected
+                && refreshCount("background") + refreshCount("sync") >= expected;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!done.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(done.getAsBoolean(), "Expected " + expected + " token grants, got " + grants.get());
+    }
+
+    // Часы, которые идут только по команде теста
+    private static final class MutableClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+
+        void advance(Duration duration) {
+            millis.addAndGet(duration.toMillis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.service.KeycloakUserSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.ws.rs.NotFoundException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тест ограничения одновременных запросов к Keycloak: лимит зафиксирован на одном запросе
+@TestPropertySource(properties = {
+        "keycloak.bulkhead.initial-limit=1",
+        "keycloak.bulkhead.min-limit=1",
+        "keycloak.bulkhead.max-limit=1"})
+public class KeycloakBulkheadIntegrationTest extends BaseIntegrationTest {
+    private static final UUID SLOW_USER_ID = UUID.randomUUID();
+    private static final UUID OTHER_USER_ID = UUID.randomUUID();
+
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KeycloakUserSource userSource;
+
+    // Пока первый запрос ждёт ответа Keycloak, второй сразу получает 503 и не обращается к Keycloak
+    @Test
+    public void rejectsWhenKeycloakCallsExceedLimit() throws Exception {
+        RealmResource realmResource = mock(RealmResource.class);
+        UsersResource usersResource = mock(UsersResource.class);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(SLOW_USER_ID.toString())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            throw new NotFoundException();
+        });
+
+        CompletableFuture<Void> slowRequest = CompletableFuture.runAsync(() -> {
+            try {
+                mvc.perform(get("/api/users/{id}", SLOW_USER_ID).with(user("mihail").roles("MODERATOR")));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        try {
+            mvc.perform(get("/api/users/{id}", OTHER_USER_ID).with(user("mihail").roles("MODERATOR")))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+            slowRequest.get(10, TimeUnit.SECONDS);
+        }
+
+        verify(usersResource, never()).get(OTHER_USER_ID.toString());
+        assertTrue(meterRegistry.get("keycloak.bulkhead.rejected").functionCounter().count() >= 1);
+        assertEquals(0, meterRegistry.get("keycloak.bulkhead.inflight").gauge().value());
+    }
+
+    // Запросы ролей и групп при обходе пользователей занимают тот же лимит, что и запросы API
+    @Test
+    public void countsScanRequestsAgainstLimit() throws Exception {
+        RealmResource realmResource = mock(RealmResource.class);
+        UsersResource usersResource = mock(UsersResource.class);
+        UserResource scannedUserResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        UserRepresentation scannedUser = new UserRepresentation();
+        scannedUser.setId(SLOW_USER_ID.toString());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.list(anyInt(), anyInt())).thenReturn(List.of(scannedUser));
+        when(usersResource.get(SLOW_USER_ID.toString())).thenReturn(scannedUserResource);
+        when(scannedUserResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            MappingsRepresentation mappings = new MappingsRepresentation();
+            mappings.setRealmMappings(List.of());
+            return mappings;
+        });
+        when(scannedUserResource.groups()).thenReturn(List.of());
+
+        CompletableFuture<Void> scan = CompletableFuture.runAsync(() -> userSource.scanUsers(users -> {
+        }));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        try {
+            mvc.perform(get("/api/users/{id}", OTHER_USER_ID).with(user("mihail").roles("MODERATOR")))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+            scan.get(10, TimeUnit.SECONDS);
+        }
+
+        verify(usersResource, never()).get(OTHER_USER_ID.toString());
+        assertEquals(0, meterRegistry.get("keycloak.bulkhead.inflight").gauge().value());
+    }
+}
@@ -0,0 +1,149 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.service.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.ws.rs.ProcessingException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тест автоматического выключателя: окно из двух вызовов, выключатель размыкается при одной ошибке из двух
+@TestPropertySource(properties = {
+        "keycloak.circuit-breaker.sliding-window-size=2",
+        "keycloak.circuit-breaker.minimum-calls=2",
+        "keycloak.circuit-breaker.wait-in-open=300ms",
+        "keycloak.circuit-breaker.half-open-calls=1"})
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class KeycloakCircuitBreakerIntegrationTest extends BaseIntegrationTest {
+    private static final UUID KNOWN_USER_ID = UUID.randomUUID();
+
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private UsersResource usersResource;
+    private UserResource userResource;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        usersResource = mock(UsersResource.class);
+        userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setFirstName("Mihail");
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(userResource.toRepresentation()).thenReturn(userRepresentation);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of());
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of());
+    }
+
+    @Test
+    public void servesStaleUserWhileKeycloakIsUnavailable() throws Exception {
+        // Keycloak доступен: пользователь попадает в последние известные данные
+        when(usersResource.get(anyString())).thenReturn(userResource);
+        mvc.perform(get("/api/users/{id}", KNOWN_USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.WARNING));
+        cacheManager.getCache("users").clear();
+
+        // Keycloak недоступен: известный пользователь отдаётся с пометкой
+        when(usersResource.get(anyString())).thenThrow(new ProcessingException("Connection refused"));
+        mvc.perform(get("/api/users/{id}", KNOWN_USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.WARNING, containsString("Response is Stale")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(jsonPath("$.firstName").value("Mihail"))
+                .andExpect(jsonPath("$.stale").doesNotExist());
+
+        // Половина вызовов в окне - ошибки, выключатель разомкнут: запрос неизвестного пользователя
+        // сразу отклоняется без обращения к Keycloak
+        clearInvocations(usersResource);
+        UUID unknownUserId = UUID.randomUUID();
+        mvc.perform(get("/api/users/{id}", unknownUserId))
+                .andExpect(status().isServiceUnavailable());
+        verify(usersResource, never()).get(unknownUserId.toString());
+
+        // Keycloak восстановился: пробный запрос замыкает выключатель, устаревший пользователь обновляется в фоне
+        doReturn(userResource).when(usersResource).get(anyString());
+        Thread.sleep(400);
+        mvc.perform(get("/api/users/{id}", unknownUserId))
+                .andExpect(status().isOk());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cacheManager.getCache("users").get(KNOWN_USER_ID) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNotNull(cacheManager.getCache("users").get(KNOWN_USER_ID));
+        mvc.perform(get("/api/users/{id}", KNOWN_USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.WARNING));
+    }
+
+    // Пометка об устаревании не влияет на сравнение ответов
+    @Test
+    public void staleCopyEqualsFreshResponse() {
+        UserResponse fresh = new UserResponse("Mihail", "Akopov", "mihail@gmail.com", List.of("MODERATOR"),
+                List.of("Moderators"));
+        UserResponse stale = fresh.asStale();
+
+        assertTrue(stale.isStale());
+        assertEquals(fresh, stale);
+        assertEquals(fresh.hashCode(), stale.hashCode());
+    }
+
+    // Слушатель смены состояния вызывается после снятия блокировки выключателя
+    @Test
+    public void notifiesListenerOutsideLock() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(50, 100, Duration.ofSeconds(1), 2, 2,
+                Duration.ZERO, 1);
+        List<Boolean> lockHeld = new CopyOnWriteArrayList<>();
+        circuitBreaker.onStateChange(state -> lockHeld.add(Thread.holdsLock(circuitBreaker)));
+
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(List.of(false, false, false), lockHeld);
+    }
+}
@@ -0,0 +1,80 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тест экспорта метрик в формате Prometheus: ошибки валидации, запросы к Keycloak и гистограммы HTTP-запросов
+@AutoConfigureObservability
+public class MetricsIntegrationTest extends BaseIntegrationTest {
+
+    @MockBean
+    private Keycloak keycloak;
+
+    @Test
+    public void exposesValidationKeycloakAndHttpMetrics() throws Exception {
+        UUID userId = UUID.randomUUID();
+        RealmResource realmResource = mock(RealmResource.class);
+        UsersResource usersResource = mock(UsersResource.class);
+        UserResource userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of());
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(userId.toString())).thenReturn(userResource);
+        when(userResource.toRepresentation()).thenReturn(new UserRepresentation());
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of());
+
+        mvc.perform(requestWithContent(post("/api/users"),
+                        new UserRequest("mihail", "mihailjava@gmail.com", "1", "Mihail", "Akopov"))
+                        .with(user("mihail").roles("MODERATOR")))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/users/{id}", userId).with(user("mihail").roles("MODERATOR")))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus").with(user("prometheus").roles("MODERATOR")))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("api_validation_failures_total{")))
+                .andExpect(content().string(containsString("field=\"password\"")))
+                .andExpect(content().string(containsString("keycloak_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("operation=\"roles\"")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")));
+    }
+
+    // Без аутентификации доступен только health, метрики требуют роли
+    @Test
+    public void restrictsActuatorEndpointsExceptHealth() throws Exception {
+        mvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/metrics"))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/metrics").with(user("mihail").roles("USER")))
+                .andExpect(status().isForbidden());
+    }
+}
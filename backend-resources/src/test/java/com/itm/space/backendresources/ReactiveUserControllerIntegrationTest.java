@@ -0,0 +1,167 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.configuration.KeycloakAccessTokenProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты неблокирующих эндпоинтов: вместо Keycloak запросы принимает локальный HTTP-сервер
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class ReactiveUserControllerIntegrationTest extends BaseIntegrationTest {
+    private static final String USERS_PATH = "/admin/realms/ITM/users";
+    private static final UUID USER_ID = UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+    private static final UUID CREATED_ID = UUID.fromString("9b2d3f1c-6a4e-4c1e-8f3a-2b7c5d9e0f11");
+    private static final Queue<String> AUTHORIZATION_HEADERS = new ConcurrentLinkedQueue<>();
+    // Потоки, в которых выполнялось синхронное получение токена
+    private static final Queue<String> TOKEN_THREADS = new ConcurrentLinkedQueue<>();
+    private static HttpServer keycloakStub;
+
+    // Токен сервисного аккаунта подставляется без обращения к Keycloak
+    @MockBean
+    private KeycloakAccessTokenProvider keycloakAccessTokenProvider;
+
+    @DynamicPropertySource
+    static void keycloakProperties(DynamicPropertyRegistry registry) throws IOException {
+        keycloakStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        keycloakStub.createContext(USERS_PATH, ReactiveUserControllerIntegrationTest::handle);
+        keycloakStub.start();
+        registry.add("keycloak.auth-server-url", () -> "http://localhost:" + keycloakStub.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopKeycloakStub() {
+        keycloakStub.stop(0);
+    }
+
+    @BeforeEach
+    void init() {
+        AUTHORIZATION_HEADERS.clear();
+        TOKEN_THREADS.clear();
+        // Действительного токена в памяти нет, поэтому токен получается синхронным обновлением
+        when(keycloakAccessTokenProvider.getAccessTokenString()).thenAnswer(invocation -> {
+            TOKEN_THREADS.add(Thread.currentThread().getName());
+            return "test-token";
+        });
+    }
+
+    // Тест получения пользователя с ролями и группами
+    @Test
+    public void getUserById() throws Exception {
+        MvcResult result = mvc.perform(get("/api/reactive/users/{id}", USER_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Anastasia"))
+                .andExpect(jsonPath("$.roles[0]").value("MODERATOR"))
+                .andExpect(jsonPath("$.groups[0]").value("moderators"));
+        assertTrue(AUTHORIZATION_HEADERS.stream().allMatch("Bearer test-token"::equals));
+        // Блокирующее обновление токена не выполняется в потоках event loop Reactor Netty
+        assertFalse(TOKEN_THREADS.isEmpty());
+        assertTrue(TOKEN_THREADS.stream().allMatch(thread -> thread.startsWith("boundedElastic")),
+                TOKEN_THREADS::toString);
+    }
+
+    // Тест получения несуществующего пользователя: ошибка Keycloak отображается так же, как в UserController
+    @Test
+    public void getUnknownUserById() throws Exception {
+        MvcResult result = mvc.perform(get("/api/reactive/users/{id}", UUID.randomUUID()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError());
+    }
+
+    // Тест получения нескольких пользователей: ненайденный пользователь возвращается как null
+    @Test
+    public void lookupUsers() throws Exception {
+        UUID unknownId = UUID.randomUUID();
+        MvcResult result = mvc.perform(requestWithContent(post("/api/reactive/users/lookup"),
+                        List.of(USER_ID, unknownId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + USER_ID + "'].email").value("mihailjava@gmail.com"))
+                .andExpect(jsonPath("$['" + unknownId + "']").value(nullValue()));
+    }
+
+    // Тест создания пользователя
+    @Test
+    public void createUser() throws Exception {
+        UserRequest userRequest = new UserRequest("mihail", "mihailjava@gmail.com", "1234", "Anastasia", "Akopova");
+        MvcResult result = mvc.perform(requestWithContent(post("/api/reactive/users"), userRequest))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertTrue(AUTHORIZATION_HEADERS.contains("Bearer test-token"));
+    }
+
+    // Тест доступа без роли MODERATOR
+    @Test
+    @WithMockUser(username = "user", authorities = "ROLE_USER")
+    public void getUserByIdWithoutModeratorRole() throws Exception {
+        mvc.perform(get("/api/reactive/users/{id}", USER_ID))
+                .andExpect(status().isForbidden());
+    }
+
+    // Ответы заглушки Admin REST API Keycloak
+    private static void handle(HttpExchange exchange) throws IOException {
+        AUTHORIZATION_HEADERS.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        String path = exchange.getRequestURI().getPath();
+        String userPath = USERS_PATH + "/" + USER_ID;
+        if ("POST".equals(exchange.getRequestMethod()) && path.equals(USERS_PATH)) {
+            exchange.getResponseHeaders().add("Location", "http://localhost" + USERS_PATH + "/" + CREATED_ID);
+            respond(exchange, 201, null);
+        } else if (path.equals(userPath)) {
+            respond(exchange, 200, "{\"id\":\"" + USER_ID + "\",\"firstName\":\"Anastasia\","
+                    + "\"lastName\":\"Akopova\",\"email\":\"mihailjava@gmail.com\"}");
+        } else if (path.equals(userPath + "/role-mappings")) {
+            respond(exchange, 200, "{\"realmMappings\":[{\"name\":\"MODERATOR\"}]}");
+        } else if (path.equals(userPath + "/groups")) {
+            respond(exchange, 200, "[{\"name\":\"moderators\"}]");
+        } else {
+            respond(exchange, 404, "{\"error\":\"User not found\"}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (body != null) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.mapper.RealmCatalog;
+import com.itm.space.backendresources.mapper.UserMapper;
+import com.itm.space.backendresources.service.RealmCatalogLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.GroupsResource;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RolesResource;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Тесты справочника ролей и групп: маппер отдаёт общие экземпляры имён и их наборов
+public class RealmCatalogIntegrationTest extends BaseIntegrationTest {
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private RealmCatalogLoader realmCatalogLoader;
+
+    @Autowired
+    private RealmCatalog realmCatalog;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        RolesResource rolesResource = mock(RolesResource.class);
+        GroupsResource groupsResource = mock(GroupsResource.class);
+        GroupRepresentation subGroup = group("Senior moderators");
+        GroupRepresentation moderators = group("Moderators");
+        moderators.setSubGroups(List.of(subGroup));
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.roles()).thenReturn(rolesResource);
+        when(realmResource.groups()).thenReturn(groupsResource);
+        when(rolesResource.list()).thenReturn(List.of(role("MODERATOR"), role("USER")));
+        when(groupsResource.groups()).thenReturn(List.of(moderators));
+    }
+
+    // Роли и группы разных пользователей с одинаковыми именами ссылаются на одни и те же списки и строки
+    @Test
+    public void sharesNamesBetweenUsers() {
+        realmCatalogLoader.refresh();
+
+        UserResponse first = map(new String("MODERATOR"), new String("Senior moderators"));
+        UserResponse second = map(new String("MODERATOR"), new String("Senior moderators"));
+
+        assertEquals(List.of("MODERATOR"), first.getRoles());
+        assertEquals(List.of("Senior moderators"), first.getGroups());
+        assertSame(first.getRoles(), second.getRoles());
+        assertSame(first.getGroups(), second.getGroups());
+        assertEquals(2, realmCatalog.roleCount());
+        assertEquals(2, realmCatalog.groupCount());
+    }
+
+    // После перезагрузки справочника выданные экземпляры имён сохраняются
+    @Test
+    public void keepsSharedNamesAfterRefresh() {
+        realmCatalogLoader.refresh();
+        UserResponse before = map(new String("USER"), new String("Moderators"));
+
+        realmCatalogLoader.refresh();
+        UserResponse after = map(new String("USER"), new String("Moderators"));
+
+        assertSame(before.getRoles(), after.getRoles());
+        assertSame(before.getGroups().get(0), after.getGroups().get(0));
+    }
+
+    private UserResponse map(String roleName, String groupName) {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setFirstName("Mihail");
+        return userMapper.userRepresentationToUserResponse(userRepresentation, List.of(role(roleName)),
+                List.of(group(groupName)));
+    }
+
+    private static RoleRepresentation role(String name) {
+        return new RoleRepresentation(name, null, false);
+    }
+
+    private static GroupRepresentation group(String name) {
+        GroupRepresentation group = new GroupRepresentation();
+        group.setName(name);
+        return group;
+    }
+}
@@ -0,0 +1,187 @@
+package com.itm.space.backendresources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itm.space.backendresources.api.request.UserRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты асинхронного создания пользователей: очередь на одну задачу и один обработчик
+@TestPropertySource(properties = {
+        "users.async.queue-capacity=1",
+        "users.async.workers=1"})
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class UserAsyncCreateIntegrationTest extends BaseIntegrationTest {
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UsersResource usersResource;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        usersResource = mock(UsersResource.class);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+    }
+
+    // Запрос ставится в очередь, по ссылке из Location доступен ID созданного пользователя
+    @Test
+    public void createsUserAsynchronously() throws Exception {
+        String createdId = UUID.randomUUID().toString();
+        when(usersResource.create(any(UserRepresentation.class)))
+                .thenReturn(Response.created(URI.create("http://keycloak/admin/realms/ITM/users/" + createdId)).build());
+
+        String location = submit("mihail")
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.id").exists())
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        JsonNode job = awaitCompletion(location);
+        assertEquals("SUCCEEDED", job.get("state").asText());
+        assertEquals(createdId, job.get("userId").asText());
+        assertEquals(201, job.get("status").asInt());
+    }
+
+    // Ошибка Keycloak сохраняется в задаче
+    @Test
+    public void reportsFailedCreation() throws Exception {
+        when(usersResource.create(any(UserRepresentation.class)))
+                .thenReturn(Response.status(Response.Status.CONFLICT).build());
+
+        String location = submit("existing")
+                .andExpect(status().isAccepted())
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        JsonNode job = awaitCompletion(location);
+        assertEquals("FAILED", job.get("state").asText());
+        assertEquals(409, job.get("status").asInt());
+    }
+
+    // Пока обработчик занят, а очередь заполнена, новые запросы отклоняются с 503
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(usersResource.create(any(UserRepresentation.class))).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Response.status(Response.Status.CONFLICT).build();
+        });
+        try {
+            String first = submit("first").andExpect(status().isAccepted())
+                    .andReturn().getResponse().getHeader("Location");
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            String second = submit("second").andExpect(status().isAccepted())
+                    .andReturn().getResponse().getHeader("Location");
+            submit("third").andExpect(status().isServiceUnavailable());
+
+            // Задачи в работе и в очереди доступны до завершения
+            mvc.perform(get(first))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.state").value("RUNNING"));
+            mvc.perform(get(second))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.state").value("QUEUED"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // Синхронное создание без заголовка Prefer не меняется
+    @Test
+    public void createsUserSynchronouslyWithoutPrefer() throws Exception {
+        when(usersResource.create(any(UserRepresentation.class))).thenReturn(Response.created(
+                URI.create("http://keycloak/admin/realms/ITM/users/" + UUID.randomUUID())).build());
+
+        mvc.perform(requestWithContent(post("/api/users"), request("mihail")))
+                .andExpect(status().isOk());
+    }
+
+    // Задача не видна другому пользователю, в том числе модератору
+    @Test
+    public void hidesJobFromOtherUsers() throws Exception {
+        when(usersResource.create(any(UserRepresentation.class)))
+                .thenReturn(Response.status(Response.Status.CONFLICT).build());
+        String location = submit("mihail")
+                .andExpect(status().isAccepted())
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        mvc.perform(get(location).with(user("ivan").roles("MODERATOR")))
+                .andExpect(status().isNotFound());
+        mvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"));
+    }
+
+    @Test
+    public void unknownJob() throws Exception {
+        mvc.perform(get("/api/users/jobs/{id}", UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    private ResultActions submit(String username) throws Exception {
+        return mvc.perform(requestWithContent(post("/api/users"), request(username))
+                .header("Prefer", "respond-async"));
+    }
+
+    private static UserRequest request(String username) {
+        return new UserRequest(username, username + "@gmail.com", "12345", "Mihail", "Akopov");
+    }
+
+    private JsonNode awaitCompletion(String location) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            JsonNode job = objectMapper.readTree(mvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString());
+            String state = job.get("state").asText();
+            if (state.equals("SUCCEEDED") || state.equals("FAILED") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
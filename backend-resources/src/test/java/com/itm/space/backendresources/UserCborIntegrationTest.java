@@ -0,0 +1,140 @@
+package com.itm.space.backendresources;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.service.KeycloakUserSource;
+import com.itm.space.backendresources.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты выбора формата CBOR по заголовкам Accept и Content-Type; JSON остаётся форматом по умолчанию
+@WithMockUser(roles = "MODERATOR")
+public class UserCborIntegrationTest extends BaseIntegrationTest {
+    private static final MediaType APPLICATION_CBOR_SEQ = MediaType.valueOf("application/cbor-seq");
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    private ObjectMapper cborMapper;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private KeycloakUserSource keycloakUserSource;
+
+    @BeforeEach
+    void init() {
+        cborMapper = cborConverter.getObjectMapper();
+    }
+
+    // Пользователь отдаётся в CBOR, если клиент его запросил, и в JSON без заголовка Accept
+    @Test
+    public void negotiatesUserResponseFormat() throws Exception {
+        UUID id = UUID.randomUUID();
+        UserResponse userResponse = user("Mihail");
+        when(userService.getUserById(id)).thenReturn(userResponse);
+
+        byte[] body = mvc.perform(get("/api/users/{id}", id).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(userResponse, cborMapper.readValue(body, UserResponse.class));
+
+        mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.firstName").value("Mihail"));
+    }
+
+    // Тело запроса на создание пользователя принимается в CBOR
+    @Test
+    public void acceptsCborRequestBody() throws Exception {
+        UserRequest userRequest = new UserRequest("mihail", "mihail@gmail.com", "password", "Mihail", "Akopov");
+
+        mvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(userRequest)))
+                .andExpect(status().isOk());
+
+        verify(userService).createUser(userRequest);
+    }
+
+    // Все ответы с выбором формата помечаются "Vary: Accept" ровно один раз
+    @Test
+    public void marksNegotiatedResponsesWithVaryAccept() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(userService.getUserById(id)).thenReturn(user("Mihail"));
+        when(userService.getUsersByIds(List.of(id))).thenReturn(Map.of(id, user("Mihail")));
+        when(userService.searchUsers("mih", 20)).thenReturn(List.of());
+        when(userService.createUsers(any())).thenReturn(List.of());
+        UserRequest userRequest = new UserRequest("mihail", "mihail@gmail.com", "password", "Mihail", "Akopov");
+
+        mvc.perform(get("/api/users/{id}", id).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mvc.perform(requestWithContent(post("/api/users/lookup"), List.of(id)))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-store")));
+        mvc.perform(get("/api/users/search").param("q", "mih"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mvc.perform(requestWithContent(post("/api/users/batch"), List.of(userRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mvc.perform(get("/api/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    // Выгрузка с "Accept: application/cbor-seq" - последовательность CBOR-объектов без разделителей
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportsCborSequence() throws Exception {
+        List<UserResponse> users = List.of(user("Mihail"), user("Anastasia"));
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(users);
+            return null;
+        }).when(userService).exportUsers(any());
+
+        byte[] body = mvc.perform(get("/api/users/export").accept(APPLICATION_CBOR_SEQ))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR_SEQ))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (MappingIterator<UserResponse> iterator = cborMapper.readerFor(UserResponse.class).readValues(body)) {
+            assertEquals(users, iterator.readAll());
+        }
+    }
+
+    private static UserResponse user(String firstName) {
+        return new UserResponse(firstName, "Akopov", firstName.toLowerCase() + "@gmail.com",
+                List.of("MODERATOR"), List.of("Moderators"));
+    }
+}
@@ -3,11 +3,13 @@ package com.itm.space.backendresources;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.service.KeycloakUserSource;
 import com.itm.space.backendresources.service.UserService;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.keycloak.admin.client.resource.UserResource;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -18,6 +20,8 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.List;
+
 @AutoConfigureMockMvc// Автоматическая настройка MockMvc для тестирования контроллеров
 public class UserControllerIntegrationTest extends BaseIntegrationTest {
 
@@ -33,6 +37,10 @@ public class UserControllerIntegrationTest extends BaseIntegrationTest {
     @MockBean
     private UserService userService;
 
+    // заглушка для обхода пользователей Keycloak, который реализует заменённый UserServiceImpl
+    @MockBean
+    private KeycloakUserSource keycloakUserSource;
+
     // ресурс для работы с конкретным пользователем
     @MockBean
     private UserResource userResource;
@@ -89,6 +97,36 @@ public class UserControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(MockMvcResultMatchers.status().isBadRequest()); // Ожидаем статус 400 Bad Request
     }
 
+    // Тест пакетного создания пользователей
+    @Test
+    @DisplayName("Тест пакетного создания пользователей")
+    @WithMockUser(roles = "MODERATOR")
+    public void testCreateUsersBatch() throws Exception {
+        List<UserRequest> userRequests = List.of(
+                new UserRequest("firstUser", "first@test.com", "somePassword", "Ivan", "Ivanov"),
+                new UserRequest("secondUser", "second@test.com", "somePassword", "Petr", "Petrov"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequests)))
+                .andExpect(MockMvcResultMatchers.status().isOk()); // ожидаем статус 200 OK
+    }
+
+    // Тест пакетного создания пользователей: все пользователи проверяются до отправки в Keycloak
+    @Test
+    @DisplayName("Тест пакетного создания пользователей с некорректными данными")
+    @WithMockUser(roles = "MODERATOR")
+    public void testCreateUsersBatchWithInvalidData() throws Exception {
+        List<UserRequest> userRequests = List.of(
+                new UserRequest("firstUser", "first@test.com", "somePassword", "Ivan", "Ivanov"),
+                new UserRequest("secondUser", "", "somePassword", "Petr", "Petrov"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userRequests)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest()) // ожидаем статус 400 Bad Request
+                .andExpect(MockMvcResultMatchers.jsonPath("$['userRequests[1].email']").exists());
+        Mockito.verifyNoInteractions(userService);
+    }
+
     // тест получения пользователя по ID - можно использовать @ParameterizedTest
     // с заранее созданными перечисленными ID пользователей
     // или генерировать UUIDs с помощью UUID.randomUUID()
@@ -144,4 +182,13 @@ public class UserControllerIntegrationTest extends BaseIntegrationTest {
         mockMvc.perform(MockMvcRequestBuilders.get("/api/users/hello")) // GET-запрос на "/api/users/hello"
                 .andExpect(MockMvcResultMatchers.status().isUnauthorized()); // ожидаем статус 401 Unauthorized
     }
+
+    // тест пересинхронизации модели чтения, когда модель выключена
+    @Test
+    @DisplayName("Тест пересинхронизации выключенной модели чтения")
+    @WithMockUser(roles = "MODERATOR")
+    public void testResyncDisabledReadModel() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/users/read-model/resync"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound()); // ожидаем статус 404 Not Found
+    }
 }
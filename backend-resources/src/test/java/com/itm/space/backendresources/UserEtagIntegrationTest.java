@@ -0,0 +1,102 @@
+package com.itm.space.backendresources;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты условного GET /api/users/{id}: ETag по содержимому ответа и 304 на совпадающий If-None-Match
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class UserEtagIntegrationTest extends BaseIntegrationTest {
+    @MockBean
+    private Keycloak keycloak;
+
+    private UserResource userResource;
+    private UserRepresentation userRepresentation;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        UsersResource usersResource = mock(UsersResource.class);
+        userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        userRepresentation = new UserRepresentation();
+        userRepresentation.setFirstName("Mihail");
+        userRepresentation.setEmail("mihail@gmail.com");
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of(new RoleRepresentation("MODERATOR", null, false)));
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(anyString())).thenReturn(userResource);
+        when(userResource.toRepresentation()).thenReturn(userRepresentation);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of());
+    }
+
+    // Повторный запрос с ETag из первого ответа получает 304 без тела; пользователь берётся из кэша
+    @Test
+    public void returnsNotModifiedForMatchingEtag() throws Exception {
+        UUID id = UUID.randomUUID();
+        String eTag = mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, private"))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertTrue(eTag.startsWith("W/\""));
+
+        mvc.perform(get("/api/users/{id}", id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        verify(userResource, times(1)).toRepresentation();
+    }
+
+    // ETag зависит только от содержимого: другой пользователь с теми же данными получает тот же ETag,
+    // изменённые данные - другой
+    @Test
+    public void etagFollowsContent() throws Exception {
+        String first = eTagOf(UUID.randomUUID());
+        assertEquals(first, eTagOf(UUID.randomUUID()));
+
+        userRepresentation.setLastName("Akopov");
+        String changed = eTagOf(UUID.randomUUID());
+        assertNotEquals(first, changed);
+        mvc.perform(get("/api/users/{id}", UUID.randomUUID()).header(HttpHeaders.IF_NONE_MATCH, first))
+                .andExpect(status().isOk());
+    }
+
+    private String eTagOf(UUID id) throws Exception {
+        return mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,127 @@
+package com.itm.space.backendresources;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты выгрузки пользователей в NDJSON: страница из двух пользователей, чтобы выгрузка шла в несколько страниц
+@TestPropertySource(properties = "users.export.page-size=2")
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class UserExportIntegrationTest extends BaseIntegrationTest {
+    @MockBean
+    private Keycloak keycloak;
+
+    private UsersResource usersResource;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        usersResource = mock(UsersResource.class);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+    }
+
+    // Пользователи всех страниц выгружаются по одному на строку; пользователь, удалённый во время выгрузки,
+    // пропускается, а после неполной страницы Keycloak больше не запрашивается
+    @Test
+    public void exportsAllPagesAsNdjson() throws Exception {
+        UserRepresentation anastasia = user("Anastasia");
+        UserRepresentation deleted = user("Deleted");
+        UserRepresentation mihail = user("Mihail");
+        when(usersResource.list(0, 2)).thenReturn(List.of(anastasia, deleted));
+        when(usersResource.list(2, 2)).thenReturn(List.of(mihail));
+        UserResource deletedResource = mock(UserResource.class);
+        when(usersResource.get(deleted.getId())).thenReturn(deletedResource);
+        when(deletedResource.roles()).thenThrow(new NotFoundException());
+
+        String body = mvc.perform(get("/api/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertEquals("""
+                {"firstName":"Anastasia","lastName":"Akopova","email":"anastasia@gmail.com","roles":["MODERATOR"],"groups":["Moderators"]}
+                {"firstName":"Mihail","lastName":"Akopova","email":"mihail@gmail.com","roles":["MODERATOR"],"groups":["Moderators"]}
+                """, body);
+        verify(usersResource, times(2)).list(anyInt(), anyInt());
+    }
+
+    // Пустой realm - пустой ответ
+    @Test
+    public void exportsEmptyRealm() throws Exception {
+        when(usersResource.list(0, 2)).thenReturn(List.of());
+
+        mvc.perform(get("/api/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(""));
+    }
+
+    // Ошибка до начала выгрузки возвращается обычным ответом об ошибке
+    @Test
+    public void exportFailsBeforeFirstPage() throws Exception {
+        when(usersResource.list(0, 2)).thenThrow(new ProcessingException("Connection refused"));
+
+        mvc.perform(get("/api/users/export"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(content().string("Connection refused"));
+    }
+
+    // Тест доступа без роли MODERATOR
+    @Test
+    @WithMockUser(username = "user", authorities = "ROLE_USER")
+    public void exportWithoutModeratorRole() throws Exception {
+        mvc.perform(get("/api/users/export"))
+                .andExpect(status().isForbidden());
+    }
+
+    private UserRepresentation user(String firstName) {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setId(UUID.randomUUID().toString());
+        userRepresentation.setFirstName(firstName);
+        userRepresentation.setLastName("Akopova");
+        userRepresentation.setEmail(firstName.toLowerCase() + "@gmail.com");
+
+        UserResource userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of(new RoleRepresentation("MODERATOR", null, false)));
+        GroupRepresentation group = new GroupRepresentation();
+        group.setName("Moderators");
+        when(usersResource.get(userRepresentation.getId())).thenReturn(userResource);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of(group));
+        return userRepresentation;
+    }
+}
@@ -0,0 +1,225 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.response.UserResponse;
+import com.itm.space.backendresources.exception.BackendResourcesException;
+import com.itm.space.backendresources.service.SingleFlight;
+import com.itm.space.backendresources.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.ws.rs.ProcessingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Тесты объединения одновременных запросов одного пользователя: ответ Keycloak задерживается,
+// пока все вызовы не присоединятся к первому. Выключатель размыкается только при одних ошибках, чтобы ошибки
+// Keycloak в тестах этого класса доходили до вызывающих, а не заменялись отказом выключателя
+@TestPropertySource(properties = "keycloak.circuit-breaker.failure-rate-threshold=100")
+public class UserFetchCoalescingIntegrationTest extends BaseIntegrationTest {
+    private static final int CALLERS = 8;
+
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    private final CountDownLatch keycloakResponds = new CountDownLatch(1);
+    private UserResource userResource;
+
+    @BeforeEach
+    void init() {
+        cacheManager.getCache("users").clear();
+        RealmResource realmResource = mock(RealmResource.class);
+        UsersResource usersResource = mock(UsersResource.class);
+        userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of());
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(anyString())).thenReturn(userResource);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void stopCallers() {
+        keycloakResponds.countDown();
+        callers.shutdownNow();
+    }
+
+    // N одновременных вызовов - один запрос пользователя к Keycloak и общий результат; после завершения
+    // ключ освобождается, и следующий вызов снова обращается к Keycloak
+    @Test
+    public void sharesOneKeycloakCallBetweenConcurrentCallers() throws Exception {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setFirstName("Mihail");
+        when(userResource.toRepresentation()).thenAnswer(invocation -> {
+            keycloakResponds.await(5, TimeUnit.SECONDS);
+            return userRepresentation;
+        });
+        UUID id = UUID.randomUUID();
+        LongSupplier coalesced = () -> (long) meterRegistry.get("keycloak.user.fetch.coalesced")
+                .functionCounter().count();
+        long coalescedBefore = coalesced.getAsLong();
+
+        List<Future<UserResponse>> results = callConcurrently(() -> userService.getUserById(id));
+        awaitCoalesced(coalesced, coalescedBefore + CALLERS - 1);
+        keycloakResponds.countDown();
+
+        UserResponse first = results.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals("Mihail", first.getFirstName());
+        for (Future<UserResponse> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(userResource, times(1)).toRepresentation();
+        assertEquals(coalescedBefore + CALLERS - 1, coalesced.getAsLong());
+
+        cacheManager.getCache("users").clear();
+        userService.getUserById(id);
+        verify(userResource, times(2)).toRepresentation();
+    }
+
+    // Ошибка Keycloak передаётся всем ожидающим вызовам, повторного запроса нет
+    @Test
+    public void sharesKeycloakFailureBetweenConcurrentCallers() throws Exception {
+        AtomicInteger keycloakCalls = new AtomicInteger();
+        when(userResource.toRepresentation()).thenAnswer(invocation -> {
+            keycloakCalls.incrementAndGet();
+            keycloakResponds.await(5, TimeUnit.SECONDS);
+            throw new ProcessingException("Connection refused");
+        });
+        UUID id = UUID.randomUUID();
+        LongSupplier coalesced = () -> (long) meterRegistry.get("keycloak.user.fetch.coalesced")
+                .functionCounter().count();
+
+        List<Future<UserResponse>> results = callConcurrently(() -> userService.getUserById(id));
+        awaitCoalesced(coalesced, coalesced.getAsLong() + CALLERS - 1);
+        keycloakResponds.countDown();
+
+        for (Future<UserResponse> result : results) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof BackendResourcesException);
+            assertTrue(ex.getCause().getMessage().contains("Connection refused"));
+        }
+        assertEquals(1, keycloakCalls.get());
+    }
+
+    // Ошибка одного из параллельных запросов прерывает поток, выполняющий соседний запрос
+    @Test
+    public void interruptsSiblingRequestsOnFailure() throws Exception {
+        CountDownLatch userRequested = new CountDownLatch(1);
+        CountDownLatch userInterrupted = new CountDownLatch(1);
+        when(userResource.toRepresentation()).thenAnswer(invocation -> {
+            userRequested.countDown();
+            try {
+                keycloakResponds.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                userInterrupted.countDown();
+                throw ex;
+            }
+            return new UserRepresentation();
+        });
+        when(userResource.groups()).thenAnswer(invocation -> {
+            userRequested.await(5, TimeUnit.SECONDS);
+            throw new ProcessingException("Connection refused");
+        });
+
+        BackendResourcesException ex = assertThrows(BackendResourcesException.class,
+                () -> userService.getUserById(UUID.randomUUID()));
+        assertTrue(ex.getMessage().contains("Connection refused"), ex.getMessage());
+        assertTrue(userInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    // Присоединившиеся вызовы получают тот же экземпляр ошибки, ключ освобождается и после ошибки
+    @Test
+    public void singleFlightRethrowsTheSameException() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch leaderFails = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("failed");
+
+        Future<String> leader = callers.submit(() -> singleFlight.execute("key", () -> {
+            leaderStarted.countDown();
+            awaitUninterruptibly(leaderFails);
+            throw failure;
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        Future<String> follower = callers.submit(() -> singleFlight.execute("key", () -> "not called"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.coalescedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        leaderFails.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(1, singleFlight.coalescedCount());
+        assertEquals("loaded", singleFlight.execute("key", () -> "loaded"));
+    }
+
+    private <T> List<Future<T>> callConcurrently(Callable<T> call) {
+        List<Future<T>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(call));
+        }
+        return results;
+    }
+
+    private static void awaitCoalesced(LongSupplier coalesced, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalesced.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
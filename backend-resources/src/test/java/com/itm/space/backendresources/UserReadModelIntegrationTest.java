@@ -0,0 +1,173 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.service.UserReadModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.ws.rs.NotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты локальной модели чтения: полный обход, применение admin-событий и сохранение модели в файл
+@TestPropertySource(properties = {
+        "users.read-model.enabled=true",
+        "users.read-model.poll-interval=100ms",
+        "users.read-model.snapshot-interval=0s"})
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class UserReadModelIntegrationTest extends BaseIntegrationTest {
+    @TempDir
+    static Path snapshotDir;
+
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private UserReadModel userReadModel;
+
+    private RealmResource realmResource;
+    private UsersResource usersResource;
+
+    @DynamicPropertySource
+    static void snapshotFile(DynamicPropertyRegistry registry) {
+        registry.add("users.read-model.snapshot-file", () -> snapshotDir.resolve("users.ndjson").toString());
+    }
+
+    @BeforeEach
+    void init() {
+        realmResource = mock(RealmResource.class);
+        usersResource = mock(UsersResource.class);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.list(anyInt(), anyInt())).thenReturn(List.of());
+        adminEvents();
+    }
+
+    // После пересинхронизации пользователь отдаётся из модели без запросов к Keycloak, модель сохраняется в файл
+    @Test
+    public void servesUsersFromReadModelAfterResync() throws Exception {
+        UserRepresentation anastasia = user("Anastasia");
+        when(usersResource.list(0, 500)).thenReturn(List.of(anastasia));
+        UUID id = UUID.fromString(anastasia.getId());
+
+        mvc.perform(post("/api/users/read-model/resync"))
+                .andExpect(status().isAccepted());
+        awaitTrue(() -> userReadModel.find(id) != null);
+
+        mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Anastasia"))
+                .andExpect(jsonPath("$.roles[0]").value("MODERATOR"));
+        verify(usersResource.get(anastasia.getId()), never()).toRepresentation();
+        assertNotNull(userReadModel.lag());
+        Path snapshot = snapshotDir.resolve("users.ndjson");
+        awaitTrue(() -> contains(snapshot, anastasia.getId()));
+    }
+
+    // Пользователь, созданный и затем удалённый в Keycloak, появляется в модели и исчезает из неё по admin-событиям
+    @Test
+    public void appliesAdminEvents() throws Exception {
+        UserRepresentation mihail = user("Mihail");
+        UUID id = UUID.fromString(mihail.getId());
+        UserResource userResource = usersResource.get(mihail.getId());
+        when(userResource.toRepresentation()).thenReturn(mihail);
+
+        adminEvents(event("USER", "CREATE", "users/" + id));
+        awaitTrue(() -> userReadModel.find(id) != null);
+
+        when(userResource.toRepresentation()).thenThrow(new NotFoundException());
+        adminEvents(event("USER", "CREATE", "users/" + id), event("USER", "DELETE", "users/" + id));
+        awaitTrue(() -> userReadModel.find(id) == null && userReadModel.isFresh());
+    }
+
+    private void adminEvents(AdminEventRepresentation... events) {
+        // Keycloak возвращает события от новых к старым
+        List<AdminEventRepresentation> newestFirst = new ArrayList<>(List.of(events));
+        Collections.reverse(newestFirst);
+        when(realmResource.getAdminEvents(any(), any(), any(), any(), any(), any(), anyList(), any(), any(),
+                anyInt(), anyInt())).thenReturn(newestFirst);
+    }
+
+    private static AdminEventRepresentation event(String resourceType, String operationType, String resourcePath) {
+        AdminEventRepresentation event = new AdminEventRepresentation();
+        event.setTime(System.currentTimeMillis());
+        event.setResourceType(resourceType);
+        event.setOperationType(operationType);
+        event.setResourcePath(resourcePath);
+        return event;
+    }
+
+    private UserRepresentation user(String firstName) {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setId(UUID.randomUUID().toString());
+        userRepresentation.setUsername(firstName.toLowerCase());
+        userRepresentation.setFirstName(firstName);
+        userRepresentation.setLastName("Akopova");
+        userRepresentation.setEmail(firstName.toLowerCase() + "@gmail.com");
+
+        UserResource userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of(new RoleRepresentation("MODERATOR", null, false)));
+        GroupRepresentation group = new GroupRepresentation();
+        group.setName("Moderators");
+        when(usersResource.get(userRepresentation.getId())).thenReturn(userResource);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of(group));
+        return userRepresentation;
+    }
+
+    private static boolean contains(Path file, String text) {
+        try {
+            return Files.exists(file) && Files.readString(file).contains(text);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
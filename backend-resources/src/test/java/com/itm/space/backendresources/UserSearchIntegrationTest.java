@@ -0,0 +1,127 @@
+package com.itm.space.backendresources;
+
+import com.itm.space.backendresources.api.request.UserRequest;
+import com.itm.space.backendresources.service.UserSearchIndexLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleMappingResource;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Тесты поиска пользователей по префиксу: индекс строится из списка пользователей Keycloak
+@WithMockUser(username = "mihail", authorities = "ROLE_MODERATOR")
+public class UserSearchIntegrationTest extends BaseIntegrationTest {
+    @MockBean
+    private Keycloak keycloak;
+
+    @Autowired
+    private UserSearchIndexLoader userSearchIndexLoader;
+
+    private UsersResource usersResource;
+
+    @BeforeEach
+    void init() {
+        RealmResource realmResource = mock(RealmResource.class);
+        usersResource = mock(UsersResource.class);
+        when(keycloak.realm(anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.list(anyInt(), anyInt())).thenReturn(List.of());
+        List<UserRepresentation> users = List.of(
+                user("anastasia", "Anastasia", "Akopova"),
+                user("mihail", "Mihail", "Akopov"),
+                user("ivan", "Ivan", "Petrov"));
+        when(usersResource.list(0, 500)).thenReturn(users);
+        userSearchIndexLoader.rebuild();
+    }
+
+    // Поиск по началу имени пользователя, email, имени или фамилии без учёта регистра, без запросов к Keycloak
+    @Test
+    public void searchesByPrefix() throws Exception {
+        mvc.perform(get("/api/users/search").param("q", "AKOP"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        mvc.perform(get("/api/users/search").param("q", "akop mih"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].username").value("mihail"))
+                .andExpect(jsonPath("$[0].email").value("mihail@gmail.com"));
+        mvc.perform(get("/api/users/search").param("q", "ivan@"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Petrov"));
+        mvc.perform(get("/api/users/search").param("q", "akop").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        verify(usersResource, never()).search(anyString());
+        // Индекс строится только из списка пользователей, роли и группы не запрашиваются
+        verify(usersResource, never()).get(anyString());
+    }
+
+    // Созданный через API пользователь сразу находится поиском
+    @Test
+    public void findsCreatedUser() throws Exception {
+        String createdId = UUID.randomUUID().toString();
+        when(usersResource.create(any(UserRepresentation.class)))
+                .thenReturn(Response.created(URI.create("http://keycloak/admin/realms/ITM/users/" + createdId)).build());
+
+        mvc.perform(requestWithContent(post("/api/users"),
+                        new UserRequest("petr", "petr@gmail.com", "12345", "Petr", "Sidorov")))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/api/users/search").param("q", "sido"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(createdId));
+    }
+
+    // Некорректные параметры поиска
+    @Test
+    public void rejectsInvalidQuery() throws Exception {
+        mvc.perform(get("/api/users/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/users/search").param("q", "akop").param("limit", "1000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private UserRepresentation user(String username, String firstName, String lastName) {
+        UserRepresentation userRepresentation = new UserRepresentation();
+        userRepresentation.setId(UUID.randomUUID().toString());
+        userRepresentation.setUsername(username);
+        userRepresentation.setFirstName(firstName);
+        userRepresentation.setLastName(lastName);
+        userRepresentation.setEmail(username + "@gmail.com");
+
+        UserResource userResource = mock(UserResource.class);
+        RoleMappingResource roleMappingResource = mock(RoleMappingResource.class);
+        MappingsRepresentation mappings = new MappingsRepresentation();
+        mappings.setRealmMappings(List.of());
+        when(usersResource.get(userRepresentation.getId())).thenReturn(userResource);
+        when(userResource.roles()).thenReturn(roleMappingResource);
+        when(roleMappingResource.getAll()).thenReturn(mappings);
+        when(userResource.groups()).thenReturn(List.of());
+        return userRepresentation;
+    }
+}
@@ -21,7 +21,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +34,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @Slf4j// Аннотация для логирования
@@ -160,5 +164,87 @@ public class UserServiceIntegrationTest extends BaseIntegrationTest {
                 .andExpect(status().is(500))
                 .andExpect(content().string(containsString("HTTP 404 Not Found")));
     }
+
+    // 4. Тест на обработку ошибки, когда падает только один из параллельных запросов (роли пользователя).
+    @Test
+    public void rolesFailureGetUserByIdByModerator() throws Exception {
+        String id = "5f1a2c3e-1b7d-4c55-9a0e-2f6f1d6c7b80";
+        when(keycloak.realm(ArgumentMatchers.anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(eq(id))).thenReturn(userResource);
+        // Запрос пользователя может быть отменён до выполнения, если запрос ролей завершится ошибкой раньше
+        lenient().when(userResource.toRepresentation()).thenReturn(userRepresentation);
+        when(userResource.roles()).thenThrow(new IllegalStateException("Roles are unavailable"));
+
+        mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().is(500))
+                .andExpect(content().string(containsString("Roles are unavailable")));
+    }
+
+    // 5. Тест на повторное получение пользователя из кэша без обращения к Keycloak.
+    @Test
+    public void cachedGetUserByIdByModerator() throws Exception {
+        String id = "0d8c1b7e-6a54-4f0a-b4c1-7e3d2a9f5b11";
+        when(keycloak.realm(ArgumentMatchers.anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(eq(id))).thenReturn(userResource);
+        when(userResource.roles()).thenReturn(mock(RoleMappingResource.class));
+        when(userResource.roles().getAll()).thenReturn(mock(MappingsRepresentation.class));
+        when(userResource.toRepresentation()).thenReturn(userRepresentation);
+
+        mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isOk());
+
+        // Второй запрос обслужен из кэша
+        verify(userResource, times(1)).toRepresentation();
+    }
+
+    // 4. Тест на пакетное создание: ошибка одного пользователя не прерывает создание остальных
+    @Test
+    public void createUsersBatchByModeratorReturnsPerItemResults() throws Exception {
+        String createdId = "7c9e6679-7425-40de-944b-e07fc1f90ae7";
+        when(keycloak.realm(ArgumentMatchers.anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.create(ArgumentMatchers.any(UserRepresentation.class)))
+                .thenAnswer(invocation -> ((UserRepresentation) invocation.getArgument(0)).getUsername().equals("mihail")
+                        ? Response.created(URI.create("http://keycloak/admin/realms/ITM/users/" + createdId)).build()
+                        : Response.status(Response.Status.CONFLICT).build());
+        List<UserRequest> userRequests = List.of(
+                new UserRequest("mihail", "mihailjava@gmail.com", "12345", "Mihail", "Akopov"),
+                new UserRequest("existing", "existing@gmail.com", "12345", "Anastasia", "Akopova"));
+
+        mvc.perform(requestWithContent(post("/api/users/batch"), userRequests))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(createdId))
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[1].id").doesNotExist())
+                .andExpect(jsonPath("$[1].status").value(409));
+    }
+
+    // 6. Тест на получение нескольких пользователей: повторы схлопываются, ненайденные возвращаются как null
+    @Test
+    public void lookupUsersByModerator() throws Exception {
+        String id = "940ccf47-9589-4c9f-84b2-bf73e93f1f8c";
+        String missingId = "a49ae7ef-26df-466c-ade1-8a034b1a1a19";
+        UserResource missingUserResource = mock(UserResource.class);
+        when(keycloak.realm(ArgumentMatchers.anyString())).thenReturn(realmResource);
+        when(realmResource.users()).thenReturn(usersResource);
+        when(usersResource.get(eq(id))).thenReturn(userResource);
+        when(usersResource.get(eq(missingId))).thenReturn(missingUserResource);
+        when(userResource.roles()).thenReturn(mock(RoleMappingResource.class));
+        when(userResource.roles().getAll()).thenReturn(mock(MappingsRepresentation.class));
+        when(userRepresentation.getEmail()).thenReturn("mihailjava@gmail.com");
+        when(userResource.toRepresentation()).thenReturn(userRepresentation);
+        when(missingUserResource.toRepresentation()).thenThrow(new NotFoundException());
+
+        mvc.perform(requestWithContent(post("/api/users/lookup"), List.of(id, missingId, id)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$['" + id + "'].email").value("mihailjava@gmail.com"))
+                .andExpect(jsonPath("$['" + missingId + "']").doesNotExist());
+        verify(userResource, times(1)).toRepresentation();
+    }
 }
 